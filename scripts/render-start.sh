@@ -26,4 +26,5 @@ fi
 PORT="${PORT:-8080}"
 JAVA_OPTS="${JAVA_OPTS:-}"
 
-exec sh -c "java $JAVA_OPTS -XX:+UseG1GC -Djava.security.egd=file:/dev/./urandom -jar /app/app.jar --server.port=${PORT}"
+# Close idle pooled OpenAI connections after 60s (JDK default: 20 minutes); JAVA_OPTS may override
+exec sh -c "java -Djdk.httpclient.keepalive.timeout=60 $JAVA_OPTS -XX:+UseG1GC -Djava.security.egd=file:/dev/./urandom -jar /app/app.jar --server.port=${PORT}"
@@ -0,0 +1,49 @@
+package AiBot.example.AiBot.config;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+
+/**
+ * Expiry and size of one two-tier cache: how long entries live in Redis (ttl), how long a node
+ * keeps its local copy (l1Ttl, never longer than ttl), and how many entries it keeps locally.
+ *
+ * Specs are written like "ttl=10m,l1-ttl=1m,l1-max-size=10000"; options left out keep the defaults.
+ */
+public record CacheSpec(Duration ttl, Duration l1Ttl, long l1MaxSize) {
+
+    public CacheSpec {
+        if (ttl.isNegative() || ttl.isZero() || l1Ttl.isNegative() || l1Ttl.isZero()) {
+            throw new IllegalArgumentException("Cache TTLs must be positive");
+        }
+        if (l1MaxSize < 0) {
+            throw new IllegalArgumentException("l1-max-size must not be negative");
+        }
+        if (l1Ttl.compareTo(ttl) > 0) {
+            l1Ttl = ttl;
+        }
+    }
+
+    public static CacheSpec parse(String spec, CacheSpec defaults) {
+        Duration ttl = defaults.ttl();
+        Duration l1Ttl = defaults.l1Ttl();
+        long l1MaxSize = defaults.l1MaxSize();
+
+        if (spec != null && !spec.isBlank()) {
+            for (String option : spec.split(",")) {
+                String[] pair = option.trim().split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Invalid cache spec option: " + option);
+                }
+                String value = pair[1].trim();
+                switch (pair[0].trim()) {
+                    case "ttl" -> ttl = DurationStyle.detectAndParse(value);
+                    case "l1-ttl" -> l1Ttl = DurationStyle.detectAndParse(value);
+                    case "l1-max-size" -> l1MaxSize = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown cache spec option: " + pair[0]);
+                }
+            }
+        }
+        return new CacheSpec(ttl, l1Ttl, l1MaxSize);
+    }
+}
@@ -0,0 +1,35 @@
+package AiBot.example.AiBot.config;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * The shared (L2) tier behind {@link TwoTierCache}: a byte store with expiry, plus a broadcast
+ * channel the nodes use to tell each other which local (L1) entries went stale.
+ */
+public interface CacheStore {
+
+    /**
+     * The stored bytes, or null when the key is absent or expired
+     */
+    byte[] get(String key);
+
+    void put(String key, byte[] value, Duration ttl);
+
+    void delete(String key);
+
+    /**
+     * Delete every key starting with the prefix
+     */
+    void deleteByPrefix(String prefix);
+
+    /**
+     * Broadcast an invalidation message to every node, including this one
+     */
+    void publish(String message);
+
+    /**
+     * Receive invalidation messages published by any node
+     */
+    void subscribe(Consumer<String> listener);
+}
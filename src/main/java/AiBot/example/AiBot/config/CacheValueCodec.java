@@ -0,0 +1,69 @@
+package AiBot.example.AiBot.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes cached values as Smile (binary JSON): a two-element array of the value's type name and
+ * the value. Only the top-level type is recorded, so nested objects carry no type metadata and
+ * are bound through their declared types like any Jackson payload. Maps and collections are
+ * decoded as the plain JDK implementations.
+ *
+ * Only this application's classes and JDK value types are instantiated on decode.
+ */
+public class CacheValueCodec {
+
+    private static final List<String> ALLOWED_PACKAGES = List.of("AiBot.example.AiBot.", "java.lang.", "java.util.", "java.time.");
+
+    private final ObjectMapper mapper = new ObjectMapper(new SmileFactory())
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    public byte[] encode(Object value) throws IOException {
+        return mapper.writeValueAsBytes(new Object[]{typeName(value), value});
+    }
+
+    public Object decode(byte[] bytes) throws IOException {
+        try (JsonParser parser = mapper.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Not an encoded cache value");
+            }
+            Class<?> type = resolve(parser.nextTextValue());
+            parser.nextToken();
+            return mapper.readValue(parser, type);
+        }
+    }
+
+    private static String typeName(Object value) {
+        if (value instanceof Map) {
+            return Map.class.getName();
+        }
+        if (value instanceof Set) {
+            return Set.class.getName();
+        }
+        if (value instanceof Collection) {
+            return List.class.getName();
+        }
+        return value.getClass().getName();
+    }
+
+    private static Class<?> resolve(String typeName) throws IOException {
+        if (typeName == null || ALLOWED_PACKAGES.stream().noneMatch(typeName::startsWith)) {
+            throw new IOException("Type not allowed in cache: " + typeName);
+        }
+        try {
+            return Class.forName(typeName, false, CacheValueCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown cached type: " + typeName, e);
+        }
+    }
+}
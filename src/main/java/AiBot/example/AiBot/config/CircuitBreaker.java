@@ -0,0 +1,83 @@
+package AiBot.example.AiBot.config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker.
+ *
+ * CLOSED lets every call through. After failureThreshold failures in a row it goes OPEN and
+ * rejects calls for openDuration; then a single trial call is let through (HALF_OPEN), which
+ * closes the breaker on success or re-opens it on failure.
+ */
+class CircuitBreaker {
+
+    enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Whether a call may go through now. When the open period is over, exactly one caller gets
+     * true and becomes the trial call.
+     */
+    boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        return current == State.OPEN
+                && clock.getAsLong() - openedAt >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * @return true if this call closed a circuit that was open or half-open
+     */
+    boolean recordSuccess() {
+        consecutiveFailures.set(0);
+        if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+            System.out.println("Circuit " + name + " closed");
+            return true;
+        }
+        return false;
+    }
+
+    void recordFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            // The trial call failed: stay open for another period
+            openedAt = clock.getAsLong();
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && state.get() == State.CLOSED) {
+            openedAt = clock.getAsLong();
+            if (state.compareAndSet(State.CLOSED, State.OPEN)) {
+                System.err.println("Circuit " + name + " opened after " + failureThreshold + " consecutive failures");
+            }
+        }
+    }
+
+    State getState() {
+        return state.get();
+    }
+}
@@ -1,36 +1,90 @@
 package AiBot.example.AiBot.config;
 
-import java.time.Duration;
-
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
 
 @Configuration
 public class RedisCacheConfig implements CachingConfigurer {
 
+	@Value("${cache.default-spec:ttl=10m,l1-ttl=1m,l1-max-size=10000}")
+	private String defaultSpec;
+
+	// Caches created at startup (so their metrics are registered); others are created on first use
+	@Value("${cache.names:}")
+	private String[] cacheNames;
+
+	@Value("${cache.invalidation-channel:cache:invalidate}")
+	private String invalidationChannel;
+
+	@Value("${cache.redis.read-timeout:50ms}")
+	private Duration readTimeout;
+
+	@Value("${cache.redis.failure-threshold:5}")
+	private int failureThreshold;
+
+	@Value("${cache.redis.open-duration:30s}")
+	private Duration openDuration;
+
+	@Value("${cache.redis.read-threads:8}")
+	private int readThreads;
+
+	@Value("${cache.redis.write-queue-capacity:10000}")
+	private int writeQueueCapacity;
+
+	@Value("${cache.redis.fallback-max-entries:10000}")
+	private long fallbackMaxEntries;
+
 	/**
-	 * Configures Spring Cache to use Redis with:
-	 * - a default TTL of 10 minutes
-	 * - string keys (so the cached entries are easy to inspect)
+	 * Configures Spring Cache as two tiers:
+	 * - a Caffeine cache per node (L1), so hot entries are served without a network hop
+	 * - Redis shared by all nodes (L2), with values encoded as Smile and keys hashed
+	 * - per-cache TTL and L1 size from "cache.specs.{name}", falling back to "cache.default-spec"
+	 * - L1 copies dropped on every node via Redis pub/sub when an entry changes
+	 * With cache.redis.enabled=false only the L1 tier is used.
 	 */
 	@Bean
-	public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-		RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-				.entryTtl(Duration.ofMinutes(10))
-				.disableCachingNullValues()
-				.serializeKeysWith(SerializationPair.fromSerializer(new StringRedisSerializer()));
-
-		return RedisCacheManager.builder(connectionFactory)
-				.cacheDefaults(config)
-				.transactionAware()
-				.build();
+	public CacheManager cacheManager(Environment environment, ObjectProvider<CacheStore> cacheStore) {
+		CacheSpec defaults = CacheSpec.parse(defaultSpec,
+				new CacheSpec(Duration.ofMinutes(10), Duration.ofMinutes(1), 10_000));
+
+		TwoTierCacheManager cacheManager = new TwoTierCacheManager(
+				name -> CacheSpec.parse(environment.getProperty("cache.specs." + name), defaults),
+				cacheStore.getIfAvailable(), new CacheValueCodec());
+		for (String name : cacheNames) {
+			cacheManager.getCache(name.trim());
+		}
+		return cacheManager;
+	}
+
+	/**
+	 * Redis behind a circuit breaker, with bounded reads, write-behind and a local fallback, so a
+	 * slow or unavailable Redis never makes a cached call slower than an uncached one
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "cache.redis.enabled", havingValue = "true", matchIfMissing = true)
+	public CacheStore redisCacheStore(RedisConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+		return new ResilientCacheStore(new RedisCacheStore(connectionFactory, invalidationChannel),
+				readTimeout, failureThreshold, openDuration, readThreads, writeQueueCapacity, fallbackMaxEntries,
+				meterRegistry);
 	}
-}
 
+	/**
+	 * Exposes L1 hit/miss/eviction counts as the standard cache.* metrics
+	 */
+	@Bean
+	public CacheMeterBinderProvider<TwoTierCache> twoTierCacheMeterBinderProvider() {
+		return (cache, tags) -> new CaffeineCacheMetrics<>(cache.getNativeCache(), cache.getName(), tags);
+	}
+}
@@ -0,0 +1,119 @@
+package AiBot.example.AiBot.config;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link CacheStore} on Redis: values are plain byte strings with a TTL, and invalidations go
+ * over a pub/sub channel.
+ */
+public class RedisCacheStore implements CacheStore, AutoCloseable {
+
+    private static final int DELETE_BATCH = 500;
+    private static final long MAX_SUBSCRIBE_BACKOFF_MS = 30_000;
+
+    private final RedisTemplate<String, byte[]> redis;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ChannelTopic invalidationTopic;
+
+    public RedisCacheStore(RedisConnectionFactory connectionFactory, String invalidationChannel) {
+        this.redis = new RedisTemplate<>();
+        this.redis.setConnectionFactory(connectionFactory);
+        this.redis.setKeySerializer(RedisSerializer.string());
+        this.redis.setValueSerializer(RedisSerializer.byteArray());
+        this.redis.afterPropertiesSet();
+        // Not a Spring bean, so it is started here once Redis is reachable rather than at startup
+        this.listenerContainer = new RedisMessageListenerContainer();
+        this.listenerContainer.setConnectionFactory(connectionFactory);
+        this.listenerContainer.afterPropertiesSet();
+        this.invalidationTopic = new ChannelTopic(invalidationChannel);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return redis.opsForValue().get(key);
+    }
+
+    @Override
+    public void put(String key, byte[] value, Duration ttl) {
+        redis.opsForValue().set(key, value, ttl);
+    }
+
+    @Override
+    public void delete(String key) {
+        redis.delete(key);
+    }
+
+    @Override
+    public void deleteByPrefix(String prefix) {
+        // SCAN instead of KEYS so a large keyspace doesn't block Redis
+        List<String> batch = new ArrayList<>();
+        try (Cursor<String> keys = redis.scan(ScanOptions.scanOptions().match(prefix + "*").count(DELETE_BATCH).build())) {
+            while (keys.hasNext()) {
+                batch.add(keys.next());
+                if (batch.size() == DELETE_BATCH) {
+                    redis.delete(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            redis.delete(batch);
+        }
+    }
+
+    @Override
+    public void publish(String message) {
+        redis.convertAndSend(invalidationTopic.getTopic(), message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> listener.accept(new String(message.getBody(), StandardCharsets.UTF_8)),
+                invalidationTopic);
+        startListening();
+    }
+
+    /**
+     * Subscribe in the background, retrying until Redis is reachable, so the application starts
+     * without Redis. Until then other nodes' changes only reach local copies when they expire.
+     */
+    private void startListening() {
+        Thread thread = new Thread(() -> {
+            long backoffMs = 1000;
+            while (!listenerContainer.isRunning()) {
+                try {
+                    listenerContainer.start();
+                    System.out.println("Listening for cache invalidations on " + invalidationTopic.getTopic());
+                } catch (Exception e) {
+                    System.err.println("Cache invalidation channel unavailable, retrying in " + backoffMs + " ms: " + e.getMessage());
+                    try {
+                        Thread.sleep(backoffMs);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                    backoffMs = Math.min(backoffMs * 2, MAX_SUBSCRIBE_BACKOFF_MS);
+                }
+            }
+        }, "cache-invalidation-subscriber");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws Exception {
+        listenerContainer.destroy();
+    }
+}
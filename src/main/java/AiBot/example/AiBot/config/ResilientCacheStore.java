@@ -0,0 +1,277 @@
+package AiBot.example.AiBot.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a slow or unavailable {@link CacheStore} from slowing down or failing the callers.
+ *
+ * - Reads wait at most readTimeout; a timeout or error is treated as a miss (fail-open).
+ * - Puts, deletes and invalidation broadcasts are queued and applied in order by one background
+ *   thread (write-behind), so callers never wait on the store to write.
+ * - A circuit breaker stops calling the store after repeated failures and probes it again later.
+ * - While the store is unavailable, puts go to a bounded local fallback store and reads are
+ *   answered from it. The fallback is dropped once the store is back, as it may have missed
+ *   evictions in the meantime.
+ * - Deletes are remembered until the store has applied them, and replayed once it is back; until
+ *   then a read of a deleted key is a miss, so the store never serves an entry that was evicted.
+ */
+public class ResilientCacheStore implements CacheStore, AutoCloseable {
+
+    private final CacheStore delegate;
+    private final long readTimeoutNanos;
+    private final CircuitBreaker breaker;
+    private final Cache<String, FallbackEntry> fallback;
+    private final ThreadPoolExecutor readExecutor;
+    private final ThreadPoolExecutor writeExecutor;
+
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong fallbackHits = new AtomicLong();
+    private final AtomicLong fallbackMisses = new AtomicLong();
+    private final AtomicLong droppedWrites = new AtomicLong();
+
+    // Deletes not yet applied to the store, bounded by the write queue capacity
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingPrefixes = ConcurrentHashMap.newKeySet();
+    private final int maxPendingDeletes;
+
+    /**
+     * @param readThreads        threads waiting on store reads; a read that finds them all busy is a miss
+     * @param writeQueueCapacity queued writes, and deletes remembered until the store applies them;
+     *                           when full, a put only goes to the fallback store
+     */
+    public ResilientCacheStore(CacheStore delegate, Duration readTimeout, int failureThreshold, Duration openDuration,
+                               int readThreads, int writeQueueCapacity, long fallbackMaxEntries,
+                               MeterRegistry meterRegistry) {
+        this(delegate, readTimeout, new CircuitBreaker("cache-store", failureThreshold, openDuration),
+                readThreads, writeQueueCapacity, fallbackMaxEntries, meterRegistry);
+    }
+
+    ResilientCacheStore(CacheStore delegate, Duration readTimeout, CircuitBreaker breaker, int readThreads,
+                        int writeQueueCapacity, long fallbackMaxEntries, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.readTimeoutNanos = readTimeout.toNanos();
+        this.breaker = breaker;
+        this.maxPendingDeletes = writeQueueCapacity;
+        this.fallback = Caffeine.newBuilder()
+                .maximumSize(fallbackMaxEntries)
+                .expireAfter(Expiry.<String, FallbackEntry>writing((key, entry) -> entry.ttl()))
+                .build();
+        this.readExecutor = new ThreadPoolExecutor(readThreads, readThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(readThreads),
+                Thread.ofPlatform().name("cache-read-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.writeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(writeQueueCapacity),
+                Thread.ofPlatform().name("cache-write-behind").daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("cache.store.breaker.state", breaker, b -> b.getState().ordinal())
+                .description("0 = closed, 1 = half-open, 2 = open")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.store.failures", failures, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("cache.store.fallback.hits", fallbackHits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("cache.store.fallback.misses", fallbackMisses, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("cache.store.fallback.hit.ratio", this, ResilientCacheStore::fallbackHitRatio).register(meterRegistry);
+        Gauge.builder("cache.store.fallback.size", fallback, Cache::estimatedSize).register(meterRegistry);
+        FunctionCounter.builder("cache.store.writes.dropped", droppedWrites, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("cache.store.write.queue", writeExecutor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("cache.store.deletes.pending", this, s -> s.pendingDeletes.size() + s.pendingPrefixes.size())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        if (isPendingDelete(key)) {
+            return null;
+        }
+        if (!breaker.allowRequest()) {
+            return fallbackGet(key);
+        }
+        Future<byte[]> read;
+        try {
+            read = readExecutor.submit(() -> delegate.get(key));
+        } catch (RejectedExecutionException e) {
+            // Every reader is stuck on the store, which is as good as a timeout
+            recordFailure();
+            return fallbackGet(key);
+        }
+        try {
+            byte[] value = read.get(readTimeoutNanos, TimeUnit.NANOSECONDS);
+            recordSuccess();
+            return value;
+        } catch (TimeoutException | ExecutionException e) {
+            read.cancel(true);
+            recordFailure();
+            return fallbackGet(key);
+        } catch (InterruptedException e) {
+            read.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] value, Duration ttl) {
+        FallbackEntry entry = new FallbackEntry(value, ttl);
+        if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+            fallback.put(key, entry);
+            return;
+        }
+        writeBehind(() -> delegate.put(key, value, ttl), () -> fallback.put(key, entry));
+    }
+
+    @Override
+    public void delete(String key) {
+        fallback.invalidate(key);
+        if (remember(pendingDeletes, key)) {
+            writeBehind(this::replayPendingDeletes, () -> {});
+        }
+    }
+
+    @Override
+    public void deleteByPrefix(String prefix) {
+        fallback.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        if (remember(pendingPrefixes, prefix)) {
+            pendingDeletes.removeIf(key -> key.startsWith(prefix));
+            writeBehind(this::replayPendingDeletes, () -> {});
+        }
+    }
+
+    @Override
+    public void publish(String message) {
+        // Not delivered while the store is down; other nodes' local copies then expire on their own
+        writeBehind(() -> delegate.publish(message), () -> {});
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        delegate.subscribe(listener);
+    }
+
+    /**
+     * Queue a write to the store; whenever it can't be applied, run the fallback instead
+     */
+    private void writeBehind(Runnable write, Runnable unavailable) {
+        try {
+            writeExecutor.execute(() -> {
+                if (!breaker.allowRequest()) {
+                    unavailable.run();
+                    return;
+                }
+                try {
+                    write.run();
+                    recordSuccess();
+                } catch (Exception e) {
+                    recordFailure();
+                    unavailable.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedWrites.incrementAndGet();
+            unavailable.run();
+        }
+    }
+
+    private boolean remember(Set<String> pending, String keyOrPrefix) {
+        if (pending.size() >= maxPendingDeletes && !pending.contains(keyOrPrefix)) {
+            // Too many deletes waiting for the store; this one may leave a stale entry until its TTL
+            droppedWrites.incrementAndGet();
+            return false;
+        }
+        pending.add(keyOrPrefix);
+        return true;
+    }
+
+    private boolean isPendingDelete(String key) {
+        if (pendingDeletes.isEmpty() && pendingPrefixes.isEmpty()) {
+            return false;
+        }
+        return pendingDeletes.contains(key) || pendingPrefixes.stream().anyMatch(key::startsWith);
+    }
+
+    /**
+     * Apply every remembered delete to the store; runs on the write-behind thread. What fails
+     * stays remembered for the next attempt.
+     */
+    private void replayPendingDeletes() {
+        for (String prefix : List.copyOf(pendingPrefixes)) {
+            delegate.deleteByPrefix(prefix);
+            pendingPrefixes.remove(prefix);
+        }
+        for (String key : List.copyOf(pendingDeletes)) {
+            delegate.delete(key);
+            pendingDeletes.remove(key);
+        }
+    }
+
+    private byte[] fallbackGet(String key) {
+        FallbackEntry entry = fallback.getIfPresent(key);
+        if (entry == null) {
+            fallbackMisses.incrementAndGet();
+            return null;
+        }
+        fallbackHits.incrementAndGet();
+        return entry.value();
+    }
+
+    private void recordSuccess() {
+        if (breaker.recordSuccess()) {
+            fallback.invalidateAll();
+            if (!pendingDeletes.isEmpty() || !pendingPrefixes.isEmpty()) {
+                // Back again: apply the deletes missed while it was unavailable
+                writeBehind(this::replayPendingDeletes, () -> {});
+            }
+        }
+    }
+
+    private void recordFailure() {
+        failures.incrementAndGet();
+        breaker.recordFailure();
+    }
+
+    CircuitBreaker.State getBreakerState() {
+        return breaker.getState();
+    }
+
+    public double fallbackHitRatio() {
+        long hitCount = fallbackHits.get();
+        long total = hitCount + fallbackMisses.get();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * Apply the queued writes (waiting a few seconds at most), then close the store
+     */
+    @Override
+    public void close() throws Exception {
+        writeExecutor.shutdown();
+        if (!writeExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+            writeExecutor.shutdownNow();
+        }
+        readExecutor.shutdownNow();
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private record FallbackEntry(byte[] value, Duration ttl) {}
+}
@@ -1,5 +1,6 @@
 package AiBot.example.AiBot.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -42,6 +43,7 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .authorizeHttpRequests(auth -> auth
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // streaming responses were authorized on the original request
                 .requestMatchers("/").permitAll() // allow access to root
                 .requestMatchers("/index.html").permitAll() // allow access to main UI
                 .requestMatchers("/favicon.ico").permitAll() // allow favicon
@@ -51,7 +53,10 @@ public class SecurityConfig {
                 .requestMatchers("/error").permitAll() // allow error pages
                 .requestMatchers(HttpMethod.GET, "/documents/**").hasAnyRole("ADMIN", "EMPLOYEE")
                 .requestMatchers("/documents/upload").hasAnyRole("ADMIN", "EMPLOYEE") // allow both admin and employee to upload
+                .requestMatchers(HttpMethod.PUT, "/documents/*").hasAnyRole("ADMIN", "EMPLOYEE") // revised versions
                 .requestMatchers("/query/**").hasAnyRole("ADMIN", "EMPLOYEE")
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
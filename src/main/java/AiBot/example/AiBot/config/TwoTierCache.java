@@ -0,0 +1,185 @@
+package AiBot.example.AiBot.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * A cache with an in-process Caffeine tier (L1) in front of a shared store (L2, Redis).
+ *
+ * Keys are replaced by a 128-bit SHA-256 prefix (22 base64url characters) in both tiers, so a
+ * multi-KB prompt used as a key costs the same as a short one. Values are stored in L2 as Smile
+ * bytes and kept deserialized in L1, so a hot entry is served without a network hop. Writes go to
+ * both tiers and are broadcast so other nodes drop their L1 copy; L1 entries also expire on their
+ * own after the spec's l1-ttl.
+ */
+public class TwoTierCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final CacheSpec spec;
+    private final Cache<String, Object> local;
+    private final CacheStore store;
+    private final CacheValueCodec codec;
+    private final Consumer<String> invalidations;
+
+    /**
+     * @param store         the shared tier, or null to run with the local tier only
+     * @param invalidations receives "key" (or "*" for everything) whenever this node changes an entry
+     */
+    public TwoTierCache(String name, CacheSpec spec, CacheStore store, CacheValueCodec codec, Consumer<String> invalidations) {
+        super(false);
+        this.name = name;
+        this.spec = spec;
+        this.store = store;
+        this.codec = codec;
+        this.invalidations = invalidations;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(spec.l1MaxSize())
+                .expireAfterWrite(spec.l1Ttl())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Cache<String, Object> getNativeCache() {
+        return local;
+    }
+
+    public CacheSpec getSpec() {
+        return spec;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String hashedKey = hashKey(key);
+        Object value = local.getIfPresent(hashedKey);
+        if (value == null) {
+            value = remoteGet(hashedKey);
+            if (value != null) {
+                local.put(hashedKey, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // Caffeine runs at most one load per key on this node; concurrent callers wait for it
+        return (T) fromStoreValue(local.get(hashKey(key), hashedKey -> {
+            Object value = remoteGet(hashedKey);
+            if (value != null) {
+                return value;
+            }
+            try {
+                value = toStoreValue(valueLoader.call());
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            remotePut(hashedKey, value);
+            return value;
+        }));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            // Null values aren't cached; drop whatever was there so readers don't see a stale value
+            evict(key);
+            return;
+        }
+        String hashedKey = hashKey(key);
+        local.put(hashedKey, value);
+        remotePut(hashedKey, value);
+        invalidations.accept(hashedKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String hashedKey = hashKey(key);
+        local.invalidate(hashedKey);
+        if (store != null) {
+            store.delete(storeKey(hashedKey));
+        }
+        invalidations.accept(hashedKey);
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        if (store != null) {
+            store.deleteByPrefix(storeKey(""));
+        }
+        invalidations.accept("*");
+    }
+
+    /**
+     * Drop this node's copy after another node changed the entry ("*" for all of them)
+     */
+    void evictLocal(String hashedKey) {
+        if ("*".equals(hashedKey)) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(hashedKey);
+        }
+    }
+
+    private Object remoteGet(String hashedKey) {
+        if (store == null) {
+            return null;
+        }
+        byte[] bytes = store.get(storeKey(hashedKey));
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return codec.decode(bytes);
+        } catch (IOException e) {
+            // Written by an incompatible version; treat as a miss and let it be overwritten
+            System.err.println("Unreadable entry in cache " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void remotePut(String hashedKey, Object value) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.put(storeKey(hashedKey), codec.encode(value), spec.ttl());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding value for cache " + name, e);
+        }
+    }
+
+    private String storeKey(String hashedKey) {
+        return "c:" + name + ":" + hashedKey;
+    }
+
+    /**
+     * First 128 bits of the SHA-256 of the key's string form, base64url without padding
+     */
+    static String hashKey(Object key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package AiBot.example.AiBot.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Creates a {@link TwoTierCache} per cache name on first use, and applies invalidations other
+ * nodes broadcast to the local tier.
+ *
+ * Invalidation messages are "nodeId cacheName hashedKey"; a node ignores its own.
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private final Function<String, CacheSpec> specs;
+    private final CacheStore store;
+    private final CacheValueCodec codec;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param specs spec for a cache name
+     * @param store the shared tier, or null to run with local caches only
+     */
+    public TwoTierCacheManager(Function<String, CacheSpec> specs, CacheStore store, CacheValueCodec codec) {
+        this.specs = specs;
+        this.store = store;
+        this.codec = codec;
+        if (store != null) {
+            store.subscribe(this::onInvalidation);
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, cacheName -> new TwoTierCache(cacheName, specs.apply(cacheName), store, codec,
+                hashedKey -> publish(cacheName, hashedKey)));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    private void publish(String cacheName, String hashedKey) {
+        if (store != null) {
+            store.publish(nodeId + " " + cacheName + " " + hashedKey);
+        }
+    }
+
+    void onInvalidation(String message) {
+        String[] parts = message.split(" ", 3);
+        if (parts.length != 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        TwoTierCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.evictLocal(parts[2]);
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package AiBot.example.AiBot.controller;
 
 import AiBot.example.AiBot.model.Document;
+import AiBot.example.AiBot.repository.DocumentSummaryView;
 import AiBot.example.AiBot.service.DocumentService;
+import AiBot.example.AiBot.service.IngestionQueueFullException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/documents")
@@ -21,7 +28,8 @@ public class DocumentController {
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadDocument(@RequestParam("file") MultipartFile file,
-                                                   @RequestParam("uploadedBy") String uploadedBy) {
+                                                   @RequestParam("uploadedBy") String uploadedBy,
+                                                   @RequestParam(value = "tags", required = false) String tags) {
         try {
             // Validate input parameters
             if (file == null || file.isEmpty()) {
@@ -34,17 +42,12 @@ public class DocumentController {
             
             System.out.println("Received upload request for file: " + file.getOriginalFilename() + " by user: " + uploadedBy);
             
-            Document savedDoc = documentService.uploadDocument(file, uploadedBy);
-            return ResponseEntity.ok(Map.of(
-                "message", "Document uploaded successfully",
-                "document", Map.of(
-                    "id", savedDoc.getId(),
-                    "fileName", savedDoc.getFileName(),
-                    "uploadedBy", savedDoc.getUploadedBy(),
-                    "uploadedAt", savedDoc.getUploadedAt(),
-                    "summary", savedDoc.getSummary()
-                )
-            ));
+            DocumentService.UploadResult result = documentService.uploadDocument(file, uploadedBy, parseTags(tags));
+            return uploadResponse(result, result.duplicate()
+                    ? "Identical document already uploaded, reusing it"
+                    : "Document uploaded, processing started");
+        } catch (IngestionQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
         } catch (IOException e) {
             System.err.println("File upload failed: " + e.getMessage());
             e.printStackTrace();
@@ -56,24 +59,133 @@ public class DocumentController {
         }
     }
 
+    /**
+     * Upload a revised version of a document. Only chunks that changed are re-embedded; the
+     * response has the same shape as an upload.
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> updateDocument(@PathVariable Long id,
+                                                              @RequestParam("file") MultipartFile file) {
+        try {
+            if (file == null || file.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "File is required and cannot be empty"));
+            }
+            DocumentService.UploadResult result = documentService.updateDocument(id, file);
+            return uploadResponse(result, result.duplicate()
+                    ? "Document unchanged"
+                    : "Document updated, re-processing changed content");
+        } catch (IngestionQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("Update error: " + e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 202 with the job when the document is being (re)processed, 200 when nothing needed processing
+     */
+    private ResponseEntity<Map<String, Object>> uploadResponse(DocumentService.UploadResult result, String message) {
+        Document savedDoc = result.document();
+        String status = result.job() != null ? result.job().getStatus() : savedDoc.getStatus();
+
+        Map<String, Object> document = new HashMap<>();
+        document.put("id", savedDoc.getId());
+        document.put("fileName", savedDoc.getFileName());
+        document.put("uploadedBy", savedDoc.getUploadedBy());
+        document.put("uploadedAt", savedDoc.getUploadedAt());
+        document.put("status", status);
+        document.put("tags", savedDoc.getTags());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", message);
+        response.put("duplicate", result.duplicate());
+        response.put("jobId", result.job() != null ? result.job().getJobId() : null);
+        response.put("statusUrl", "/documents/" + savedDoc.getId() + "/status");
+        response.put("document", document);
+        return result.duplicate()
+                ? ResponseEntity.ok(response)
+                : ResponseEntity.accepted().body(response);
+    }
+
+    /**
+     * Comma-separated tags from the upload form, trimmed and lowercased
+     */
+    private Set<String> parseTags(String tags) {
+        Set<String> parsed = new HashSet<>();
+        if (tags != null) {
+            for (String tag : tags.split(",")) {
+                if (!tag.isBlank()) {
+                    parsed.add(tag.trim().toLowerCase());
+                }
+            }
+        }
+        return parsed;
+    }
+
     @GetMapping
-    public ResponseEntity<List<Document>> getAllDocuments() {
+    public ResponseEntity<List<DocumentSummaryView>> getAllDocuments() {
         return ResponseEntity.ok(documentService.getAllDocuments());
     }
 
+    /**
+     * Paginated document list, e.g. /documents/page?page=0&size=20&sort=uploadedAt,desc
+     */
+    @GetMapping("/page")
+    public ResponseEntity<Map<String, Object>> getDocumentPage(@RequestParam(defaultValue = "0") int page,
+                                                               @RequestParam(defaultValue = "20") int size,
+                                                               @RequestParam(defaultValue = "uploadedAt,desc") String sort) {
+        try {
+            Page<DocumentSummaryView> result = documentService.getDocumentPage(page, size, sort);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("content", result.getContent());
+            response.put("page", result.getNumber());
+            response.put("size", result.getSize());
+            response.put("totalElements", result.getTotalElements());
+            response.put("totalPages", result.getTotalPages());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Keyset-paginated document list, newest first. Pass the returned nextCursor as "after" to get
+     * the next page; it is null on the last page.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<Map<String, Object>> scrollDocuments(@RequestParam(required = false) Long after,
+                                                               @RequestParam(defaultValue = "20") int size) {
+        try {
+            List<DocumentSummaryView> documents = documentService.scrollDocuments(after, size);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("content", documents);
+            response.put("nextCursor", documents.size() == size ? documents.get(documents.size() - 1).getId() : null);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, Object>> getDocument(@PathVariable Long id) {
         try {
             Document document = documentService.getDocumentById(id)
                     .orElseThrow(() -> new IllegalArgumentException("Document not found"));
             
-            return ResponseEntity.ok(Map.of(
-                "id", document.getId(),
-                "fileName", document.getFileName(),
-                "uploadedBy", document.getUploadedBy(),
-                "uploadedAt", document.getUploadedAt(),
-                "summary", document.getSummary()
-            ));
+            Map<String, Object> response = new HashMap<>();
+            response.put("id", document.getId());
+            response.put("fileName", document.getFileName());
+            response.put("uploadedBy", document.getUploadedBy());
+            response.put("uploadedAt", document.getUploadedAt());
+            response.put("summary", document.getSummary());
+            response.put("summaryStatus", document.getSummaryStatus());
+            response.put("status", document.getStatus());
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -82,14 +194,16 @@ public class DocumentController {
     @GetMapping("/{id}/summary")
     public ResponseEntity<Map<String, Object>> getDocumentSummary(@PathVariable Long id) {
         try {
-            Document document = documentService.getDocumentById(id)
-                    .orElseThrow(() -> new IllegalArgumentException("Document not found"));
-            
-            return ResponseEntity.ok(Map.of(
-                "documentId", id,
-                "fileName", document.getFileName(),
-                "summary", document.getSummary()
-            ));
+            return ResponseEntity.ok(documentService.getDocumentSummary(id));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/status")
+    public ResponseEntity<Map<String, Object>> getDocumentStatus(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(documentService.getDocumentStatus(id));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -1,11 +1,21 @@
 package AiBot.example.AiBot.controller;
 
 import AiBot.example.AiBot.model.QueryLog;
+import AiBot.example.AiBot.service.AnswerExecutionService;
 import AiBot.example.AiBot.service.QueryService;
+import AiBot.example.AiBot.service.RetrievalOptions;
+import AiBot.example.AiBot.service.ServerBusyException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.Principal;
 import java.util.List;
 import java.util.Map;
 
@@ -17,6 +27,12 @@ public class QueryController {
     @Autowired
     private QueryService queryService;
 
+    @Autowired
+    private AnswerExecutionService answerExecutionService;
+
+    @Value("${query.stream.timeout-ms:120000}")
+    private long streamTimeoutMs;
+
     @PostMapping("/ask")
     public ResponseEntity<Map<String, Object>> askQuestion(@RequestBody Map<String, Object> request) {
         try {
@@ -28,13 +44,97 @@ public class QueryController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Document ID and question are required"));
             }
             
-            Map<String, Object> response = queryService.askQuestion(question, username, documentId);
+            Map<String, Object> response = queryService.askQuestion(question, username, documentId,
+                    queryService.retrievalOptions(request));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Ask across the knowledge base instead of one document. Optional "documentIds", "uploadedBy"
+     * and "tags" narrow the search; the answer comes with per-chunk citations.
+     */
+    @PostMapping("/ask-all")
+    public ResponseEntity<Map<String, Object>> askAcrossDocuments(@RequestBody Map<String, Object> request) {
+        try {
+            String question = (String) request.get("question");
+            String username = (String) request.get("username");
+
+            if (question == null || question.trim().isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Question is required"));
+            }
+
+            Map<String, Object> response = queryService.askAcrossDocuments(question, username, request,
+                    queryService.retrievalOptions(request));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Streaming variant of /ask: answer tokens are sent as "chunk" events, followed by a "done"
+     * event carrying the same body /ask returns. Answers 503 with an "error" event when the
+     * server is at capacity
+     */
+    @PostMapping(path = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> askQuestionStream(@RequestBody Map<String, Object> request, Principal principal) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        Object documentIdValue = request.get("documentId");
+        String question = (String) request.get("question");
+        String username = (String) request.get("username");
+
+        if (documentIdValue == null || question == null || question.trim().isEmpty()) {
+            sendErrorAndComplete(emitter, "Document ID and question are required");
+            return ResponseEntity.badRequest().body(emitter);
+        }
+        Long documentId = Long.valueOf(documentIdValue.toString());
+        RetrievalOptions options;
+        try {
+            options = queryService.retrievalOptions(request);
+        } catch (IllegalArgumentException e) {
+            sendErrorAndComplete(emitter, e.getMessage());
+            return ResponseEntity.badRequest().body(emitter);
+        }
+
+        try {
+            // Counted against the authenticated user, not the username in the body
+            answerExecutionService.submit(principal != null ? principal.getName() : null, () -> {
+                try {
+                    Map<String, Object> response = queryService.askQuestionStreaming(question, username, documentId, options, delta -> {
+                        try {
+                            emitter.send(SseEmitter.event().name("chunk").data(delta, MediaType.TEXT_PLAIN));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    emitter.send(SseEmitter.event().name("done").data(response, MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (Exception e) {
+                    sendErrorAndComplete(emitter, e.getMessage());
+                }
+            }, busy -> sendErrorAndComplete(emitter, busy));
+        } catch (ServerBusyException e) {
+            sendErrorAndComplete(emitter, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(emitter);
+        }
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("error", String.valueOf(message)), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception e) {
+            // Client went away; nothing left to tell it
+            emitter.completeWithError(e);
+        }
+    }
+
     @GetMapping("/history/{username}")
     public ResponseEntity<List<QueryLog>> getQueryHistory(@PathVariable String username) {
         try {
@@ -1,7 +1,10 @@
 package AiBot.example.AiBot.controller;
 
 import AiBot.example.AiBot.model.ChatMessage;
+import AiBot.example.AiBot.service.AnswerExecutionService;
 import AiBot.example.AiBot.service.QueryService;
+import AiBot.example.AiBot.service.RetrievalOptions;
+import AiBot.example.AiBot.service.ServerBusyException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -11,7 +14,6 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 @Controller
 public class WebSocketController {
@@ -22,6 +24,9 @@ public class WebSocketController {
     @Autowired
     private QueryService queryService;
 
+    @Autowired
+    private AnswerExecutionService answerExecutionService;
+
     @MessageMapping("/chat.sendMessage")
     @SendTo("/topic/public")
     public ChatMessage sendMessage(@Payload ChatMessage chatMessage) {
@@ -41,25 +46,44 @@ public class WebSocketController {
         String username = (String) request.get("username");
         String question = (String) request.get("question");
         String documentId = request.get("documentId").toString();
+        boolean stream = Boolean.TRUE.equals(request.get("stream"));
         String sessionId = headerAccessor.getSessionId();
 
         // Send typing indicator to the current STOMP session
         ChatMessage typingMessage = new ChatMessage("TYPING", "🤔 Thinking...", "AiBot", documentId);
         sendToSessionQueue(sessionId, typingMessage);
 
-        // Process question asynchronously
-        CompletableFuture.runAsync(() -> {
-            try {
-                Map<String, Object> response = queryService.askQuestion(question, username, Long.valueOf(documentId));
-                String answer = (String) response.get("answer");
-
-                ChatMessage answerMessage = new ChatMessage("ANSWER", answer, "AiBot", documentId);
-                sendToSessionQueue(sessionId, answerMessage);
-            } catch (Exception e) {
-                ChatMessage errorMessage = new ChatMessage("ERROR", "Sorry, I encountered an error: " + e.getMessage(), "AiBot", documentId);
-                sendToSessionQueue(sessionId, errorMessage);
-            }
-        });
+        // Process question on the answer executor; reject explicitly when at capacity. It counts
+        // against the connection's user if it has one, else its session, never the name in the message
+        String caller = headerAccessor.getUser() != null ? headerAccessor.getUser().getName() : "session:" + sessionId;
+        try {
+            RetrievalOptions options = queryService.retrievalOptions(request);
+            answerExecutionService.submit(caller, () -> {
+                try {
+                    if (stream) {
+                        // Forward answer tokens as they arrive, then mark the end with the full answer
+                        Map<String, Object> response = queryService.askQuestionStreaming(question, username, Long.valueOf(documentId), options,
+                                delta -> sendToSessionQueue(sessionId, new ChatMessage("ANSWER_CHUNK", delta, "AiBot", documentId)));
+                        ChatMessage endMessage = new ChatMessage("ANSWER_END", (String) response.get("answer"), "AiBot", documentId);
+                        sendToSessionQueue(sessionId, endMessage);
+                        return;
+                    }
+
+                    Map<String, Object> response = queryService.askQuestion(question, username, Long.valueOf(documentId), options);
+                    String answer = (String) response.get("answer");
+
+                    ChatMessage answerMessage = new ChatMessage("ANSWER", answer, "AiBot", documentId);
+                    sendToSessionQueue(sessionId, answerMessage);
+                } catch (Exception e) {
+                    ChatMessage errorMessage = new ChatMessage("ERROR", "Sorry, I encountered an error: " + e.getMessage(), "AiBot", documentId);
+                    sendToSessionQueue(sessionId, errorMessage);
+                }
+            }, busy -> sendToSessionQueue(sessionId, new ChatMessage("BUSY", busy, "AiBot", documentId)));
+        } catch (ServerBusyException e) {
+            sendToSessionQueue(sessionId, new ChatMessage("BUSY", e.getMessage(), "AiBot", documentId));
+        } catch (IllegalArgumentException e) {
+            sendToSessionQueue(sessionId, new ChatMessage("ERROR", "Invalid request: " + e.getMessage(), "AiBot", documentId));
+        }
     }
 
     @MessageMapping("/chat.typing")
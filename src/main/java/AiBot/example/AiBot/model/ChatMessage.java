@@ -3,7 +3,7 @@ package AiBot.example.AiBot.model;
 import java.time.LocalDateTime;
 
 public class ChatMessage {
-    private String type; // "QUESTION", "ANSWER", "TYPING", "ERROR"
+    private String type; // "QUESTION", "ANSWER", "ANSWER_CHUNK", "ANSWER_END", "TYPING", "ERROR", "BUSY"
     private String content;
     private String sender;
     private String documentId;
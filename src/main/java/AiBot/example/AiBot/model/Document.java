@@ -2,9 +2,15 @@ package AiBot.example.AiBot.model;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        @Index(name = "idx_documents_uploaded_at", columnList = "uploadedAt"),
+        @Index(name = "idx_documents_content_hash", columnList = "contentHash"),
+        @Index(name = "idx_documents_summary_hash", columnList = "summaryContentHash")
+})
 public class Document {
 
     @Id
@@ -23,11 +29,29 @@ public class Document {
     @Column(nullable = false)
     private LocalDateTime uploadedAt;
 
-    @Column(columnDefinition = "TEXT")
+    // Summary columns are written only by SummaryService's update query, so the ingestion pipeline
+    // saving this entity can't overwrite a summary that finishes concurrently
+    @Column(columnDefinition = "TEXT", updatable = false)
     private String summary;
 
-    @Column(columnDefinition = "TEXT")
-    private String content;
+    @Column(updatable = false)
+    private String summaryStatus; // PENDING / SUMMARIZING / READY / FAILED
+
+    // SHA-256 of the extracted text the summary was generated from, hex
+    @Column(length = 64, updatable = false)
+    private String summaryContentHash;
+
+    // SHA-256 of the uploaded file, hex
+    @Column(length = 64)
+    private String contentHash;
+
+    private String status; // QUEUED / EXTRACTING / CHUNKING / EMBEDDING / STORING / READY / FAILED
+
+    // Lowercase labels used to scope corpus-wide questions
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "document_tags", joinColumns = @JoinColumn(name = "document_id"))
+    @Column(name = "tag")
+    private Set<String> tags = new HashSet<>();
 
     // Constructors
     public Document() {}
@@ -88,12 +112,44 @@ public class Document {
         this.summary = summary;
     }
 
-    public String getContent() {
-        return content;
+    public String getSummaryStatus() {
+        return summaryStatus;
+    }
+
+    public void setSummaryStatus(String summaryStatus) {
+        this.summaryStatus = summaryStatus;
+    }
+
+    public String getSummaryContentHash() {
+        return summaryContentHash;
+    }
+
+    public void setSummaryContentHash(String summaryContentHash) {
+        this.summaryContentHash = summaryContentHash;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Set<String> getTags() {
+        return tags;
     }
 
-    public void setContent(String content) {
-        this.content = content;
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
     }
 
     @Override
@@ -104,6 +160,8 @@ public class Document {
                 ", filePath='" + filePath + '\'' +
                 ", uploadedBy='" + uploadedBy + '\'' +
                 ", uploadedAt=" + uploadedAt +
+                ", status='" + status + '\'' +
+                ", tags=" + tags +
                 '}';
     }
 }
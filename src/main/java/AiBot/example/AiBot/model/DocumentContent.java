@@ -0,0 +1,43 @@
+package AiBot.example.AiBot.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Extracted text of a document, kept out of the documents table so listing and loading
+ * documents never reads it. Shares the id of its document.
+ */
+@Entity
+@Table(name = "document_contents")
+public class DocumentContent {
+
+    @Id
+    private Long documentId;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    // Constructors
+    public DocumentContent() {}
+
+    public DocumentContent(Long documentId, String content) {
+        this.documentId = documentId;
+        this.content = content;
+    }
+
+    // Getters and Setters
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
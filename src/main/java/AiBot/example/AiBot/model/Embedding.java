@@ -0,0 +1,153 @@
+package AiBot.example.AiBot.model;
+
+import java.util.Arrays;
+
+/**
+ * Embedding vector backed by a primitive float[].
+ *
+ * The backing array is shared, not copied, so callers must not modify
+ * the array they pass in or get back from {@link #values()}.
+ */
+public final class Embedding {
+
+    // Powers of ten from 1e-40 to 1e60, enough to scale any finite float to nine digits
+    private static final int POW10_OFFSET = 40;
+    private static final double[] POW10 = new double[101];
+
+    static {
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = Double.parseDouble("1e" + (i - POW10_OFFSET));
+        }
+    }
+
+    private final float[] values;
+
+    public Embedding(float[] values) {
+        this.values = values;
+    }
+
+    public float[] values() {
+        return values;
+    }
+
+    public int dimensions() {
+        return values.length;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Size of the vector data in bytes, used for cache accounting
+     */
+    public long sizeInBytes() {
+        return 4L * values.length;
+    }
+
+    /**
+     * pgvector text representation, e.g. [1e-1,25e-2,3]
+     */
+    public String toVectorLiteral() {
+        StringBuilder sb = new StringBuilder(values.length * 12 + 2);
+        appendVectorLiteral(sb);
+        return sb.toString();
+    }
+
+    public void appendVectorLiteral(StringBuilder sb) {
+        sb.append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendFloat(sb, values[i]);
+        }
+        sb.append(']');
+    }
+
+    /**
+     * Append a float as nine significant digits in integer-mantissa form (e.g. 123456789e-10).
+     * Nine digits are enough for the value to parse back to the same float, and unlike
+     * StringBuilder.append(float) this writes straight into the builder without allocating.
+     */
+    static void appendFloat(StringBuilder sb, float value) {
+        if (value == 0f || Float.isNaN(value) || Float.isInfinite(value)) {
+            sb.append(value);
+            return;
+        }
+
+        double d = value;
+        if (d < 0) {
+            sb.append('-');
+            d = -d;
+        }
+
+        // log10 can be off by one near powers of ten; correct it from the digit count
+        int exponent = (int) Math.floor(Math.log10(d));
+        long digits = Math.round(d * POW10[POW10_OFFSET + 8 - exponent]);
+        if (digits >= 1_000_000_000L) {
+            exponent++;
+            digits = Math.round(d * POW10[POW10_OFFSET + 8 - exponent]);
+        } else if (digits < 100_000_000L) {
+            exponent--;
+            digits = Math.round(d * POW10[POW10_OFFSET + 8 - exponent]);
+        }
+
+        int scale = exponent - 8;
+        while (digits % 10 == 0) {
+            digits /= 10;
+            scale++;
+        }
+
+        sb.append(digits);
+        if (scale != 0) {
+            sb.append('e').append(scale);
+        }
+    }
+
+    /**
+     * Parse the pgvector text representation produced by {@link #toVectorLiteral()} or by PostgreSQL
+     */
+    public static Embedding parseVectorLiteral(String literal) {
+        int start = literal.indexOf('[') + 1;
+        int end = literal.lastIndexOf(']');
+        if (start <= 0 || end < start) {
+            throw new IllegalArgumentException("Not a vector literal: " + literal);
+        }
+        if (end == start) {
+            return new Embedding(new float[0]);
+        }
+
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (literal.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        float[] values = new float[count];
+        int valueStart = start;
+        for (int i = 0; i < count; i++) {
+            int comma = literal.indexOf(',', valueStart);
+            int valueEnd = (comma < 0 || comma > end) ? end : comma;
+            values[i] = Float.parseFloat(literal.substring(valueStart, valueEnd).trim());
+            valueStart = valueEnd + 1;
+        }
+        return new Embedding(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Embedding other && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "Embedding{dimensions=" + values.length + '}';
+    }
+}
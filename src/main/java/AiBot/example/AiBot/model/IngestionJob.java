@@ -0,0 +1,92 @@
+package AiBot.example.AiBot.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * In-memory progress of a document moving through the ingestion pipeline.
+ */
+public class IngestionJob {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String EXTRACTING = "EXTRACTING";
+    public static final String CHUNKING = "CHUNKING";
+    public static final String EMBEDDING = "EMBEDDING";
+    public static final String STORING = "STORING";
+    public static final String READY = "READY";
+    public static final String FAILED = "FAILED";
+
+    private final String jobId;
+    private final Long documentId;
+    private final LocalDateTime createdAt;
+    private volatile String status;
+    private volatile String error;
+    private volatile LocalDateTime updatedAt;
+
+    public IngestionJob(Long documentId) {
+        this.jobId = UUID.randomUUID().toString();
+        this.documentId = documentId;
+        this.createdAt = LocalDateTime.now();
+        this.status = QUEUED;
+        this.updatedAt = createdAt;
+    }
+
+    /**
+     * Rough completion percentage for a pipeline stage
+     */
+    public static int progressOf(String status) {
+        if (status == null) {
+            return 0;
+        }
+        return switch (status) {
+            case EXTRACTING -> 10;
+            case CHUNKING -> 25;
+            case EMBEDDING -> 40;
+            case STORING -> 75;
+            case READY, FAILED -> 100;
+            default -> 0;
+        };
+    }
+
+    public boolean isFinished() {
+        return READY.equals(status) || FAILED.equals(status);
+    }
+
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public int getProgress() {
+        return progressOf(status);
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,88 @@
+package AiBot.example.AiBot.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * In-memory progress of a document summary being generated in the background.
+ */
+public class SummaryJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String SUMMARIZING = "SUMMARIZING";
+    public static final String READY = "READY";
+    public static final String FAILED = "FAILED";
+
+    private final Long documentId;
+    private volatile String status;
+    private volatile int sectionsTotal;
+    private volatile int sectionsDone;
+    private volatile String error;
+    private volatile LocalDateTime updatedAt;
+
+    public SummaryJob(Long documentId) {
+        this.documentId = documentId;
+        this.status = PENDING;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Completion percentage: section summaries make up the first 90%, combining them the rest
+     */
+    public int getProgress() {
+        if (READY.equals(status) || FAILED.equals(status)) {
+            return 100;
+        }
+        if (sectionsTotal == 0) {
+            return 0;
+        }
+        return 90 * sectionsDone / sectionsTotal;
+    }
+
+    public boolean isFinished() {
+        return READY.equals(status) || FAILED.equals(status);
+    }
+
+    // Getters and Setters
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public int getSectionsTotal() {
+        return sectionsTotal;
+    }
+
+    public void setSectionsTotal(int sectionsTotal) {
+        this.sectionsTotal = sectionsTotal;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public int getSectionsDone() {
+        return sectionsDone;
+    }
+
+    public void setSectionsDone(int sectionsDone) {
+        this.sectionsDone = sectionsDone;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
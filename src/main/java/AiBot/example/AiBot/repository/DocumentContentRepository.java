@@ -0,0 +1,7 @@
+package AiBot.example.AiBot.repository;
+
+import AiBot.example.AiBot.model.DocumentContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DocumentContentRepository extends JpaRepository<DocumentContent, Long> {
+}
@@ -1,8 +1,63 @@
 package AiBot.example.AiBot.repository;
 
 import AiBot.example.AiBot.model.Document;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface DocumentRepository extends JpaRepository<Document, Long> {
-    // You can add custom queries if needed later
+
+    @Query("SELECT d.id FROM Document d WHERE d.uploadedBy = :uploadedBy")
+    List<Long> findIdsByUploadedBy(@Param("uploadedBy") String uploadedBy);
+
+    // Documents carrying any of the given tags
+    @Query("SELECT DISTINCT d.id FROM Document d JOIN d.tags t WHERE t IN :tags")
+    List<Long> findIdsByAnyTag(@Param("tags") Collection<String> tags);
+
+    // Earliest document with the same file bytes that didn't fail processing
+    Optional<Document> findFirstByContentHashAndStatusNotOrderByIdAsc(String contentHash, String status);
+
+    // A document whose summary was generated from exactly this extracted text
+    Optional<Document> findFirstBySummaryContentHashAndSummaryStatusOrderByIdAsc(String summaryContentHash, String summaryStatus);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.status = :status WHERE d.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") String status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.summaryStatus = :status WHERE d.id = :id")
+    int updateSummaryStatus(@Param("id") Long id, @Param("status") String status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.summary = :summary, d.summaryContentHash = :hash, d.summaryStatus = :status WHERE d.id = :id")
+    int updateSummary(@Param("id") Long id, @Param("summary") String summary, @Param("hash") String hash,
+                      @Param("status") String status);
+
+    // Adds one tag without writing back the rest of the document
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO document_tags (document_id, tag) VALUES (:id, :tag)", nativeQuery = true)
+    int addTag(@Param("id") Long id, @Param("tag") String tag);
+
+    List<DocumentSummaryView> findAllProjectedBy(Sort sort);
+
+    Page<DocumentSummaryView> findAllProjectedBy(Pageable pageable);
+
+    // Keyset pagination, newest first: the first page, then every page after the last id seen
+    List<DocumentSummaryView> findAllProjectedByOrderByIdDesc(Limit limit);
+
+    List<DocumentSummaryView> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
 }
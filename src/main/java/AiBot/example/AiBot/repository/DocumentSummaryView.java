@@ -0,0 +1,19 @@
+package AiBot.example.AiBot.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Columns needed to list documents; only these are selected, never content or summary
+ */
+public interface DocumentSummaryView {
+
+    Long getId();
+
+    String getFileName();
+
+    String getUploadedBy();
+
+    LocalDateTime getUploadedAt();
+
+    String getStatus();
+}
@@ -0,0 +1,192 @@
+package AiBot.example.AiBot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Single-flight for questions: while a question about a document is being answered, identical
+ * questions (same document, same retrieval options, same text after normalizing case, whitespace
+ * and trailing punctuation) wait for that answer instead of running embedding, retrieval and the
+ * LLM again.
+ *
+ * Streaming callers that join late first get the text generated so far as one delta, then the
+ * rest as it arrives. Waiting callers give up their LLM slot while they wait. Nothing is kept
+ * once the answer is done; repeated questions later on are the answer caches' job.
+ */
+@Service
+public class AnswerCoalescer {
+
+    @Autowired
+    private AnswerExecutionService answerExecutionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${query.coalescing.enabled:true}")
+    private boolean enabled;
+
+    private final Map<QuestionKey, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private Counter coalesced;
+
+    @PostConstruct
+    void registerMetrics() {
+        coalesced = Counter.builder("query.coalesced").register(meterRegistry);
+        Gauge.builder("query.inflight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Answer with compute, or join the identical question already in flight.
+     *
+     * @param onDelta receives the answer text as it is generated, or null
+     * @param compute produces the answer, passing generated text to the consumer it is given
+     */
+    public String answer(Long documentId, String question, RetrievalOptions options, Consumer<String> onDelta,
+                         Function<Consumer<String>, String> compute) {
+        if (!enabled) {
+            return compute.apply(onDelta != null ? onDelta : delta -> { });
+        }
+
+        QuestionKey key = new QuestionKey(documentId, normalize(question), options);
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            if (onDelta != null) {
+                existing.subscribe(onDelta);
+            }
+            return answerExecutionService.withoutLlmSlot(existing::await);
+        }
+
+        if (onDelta != null) {
+            flight.subscribe(onDelta);
+        }
+        try {
+            String answer = compute.apply(flight::publish);
+            if (!flight.hasPublished()) {
+                // Computed without streaming; streaming callers get the whole answer as one delta
+                flight.publish(answer);
+            }
+            flight.result.complete(answer);
+            return answer;
+        } catch (Throwable e) {
+            // Errors too, or the waiters would block forever
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    static String normalize(String question) {
+        return question.strip()
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .replaceAll("[\\s?!.]+$", "");
+    }
+
+    private record QuestionKey(Long documentId, String question, RetrievalOptions options) {}
+
+    /**
+     * One answer being computed, with the callers streaming it
+     */
+    private static final class Flight {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final StringBuilder published = new StringBuilder();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+
+        void subscribe(Consumer<String> listener) {
+            Subscriber subscriber = new Subscriber(listener);
+            // Holding the subscriber's lock makes live deltas wait until the text so far is delivered
+            synchronized (subscriber) {
+                String soFar;
+                synchronized (this) {
+                    soFar = published.toString();
+                    subscribers.add(subscriber);
+                }
+                if (!soFar.isEmpty() && !subscriber.deliver(soFar)) {
+                    unsubscribe(subscriber);
+                }
+            }
+        }
+
+        void publish(String delta) {
+            List<Subscriber> recipients;
+            synchronized (this) {
+                published.append(delta);
+                recipients = List.copyOf(subscribers);
+            }
+            // Delivered outside the monitor so a slow client doesn't hold up others joining
+            for (Subscriber subscriber : recipients) {
+                if (!subscriber.deliver(delta)) {
+                    unsubscribe(subscriber);
+                }
+            }
+        }
+
+        private synchronized void unsubscribe(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+        }
+
+        synchronized boolean hasPublished() {
+            return !published.isEmpty();
+        }
+
+        String await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new RuntimeException("Failed to process question", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A streaming caller; its deltas are delivered one at a time and in order
+     */
+    private static final class Subscriber {
+        private final Consumer<String> listener;
+        private boolean failed;
+
+        Subscriber(Consumer<String> listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @return false once the listener has failed (its client went away); it gets nothing more
+         */
+        synchronized boolean deliver(String delta) {
+            if (failed) {
+                return false;
+            }
+            try {
+                listener.accept(delta);
+                return true;
+            } catch (RuntimeException e) {
+                failed = true;
+                return false;
+            }
+        }
+    }
+}
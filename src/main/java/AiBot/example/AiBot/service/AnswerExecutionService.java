@@ -0,0 +1,288 @@
+package AiBot.example.AiBot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs question answering off the request/message threads.
+ *
+ * Admission is bounded (globally and per user) so excess load is rejected with a
+ * {@link ServerBusyException} instead of queuing without limit. A fixed number of LLM slots caps
+ * how many answers run at once; a freed slot goes to the next user in turn who is waiting, so
+ * one user's questions can't take every slot while another user's wait. Tasks run on virtual
+ * threads by default, since they spend nearly all their time blocked on HTTP and JDBC.
+ */
+@Service
+public class AnswerExecutionService {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${answer.executor.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    // Pool size when virtual threads are disabled
+    @Value("${answer.executor.platform-threads:16}")
+    private int platformThreads;
+
+    @Value("${answer.executor.max-concurrent:8}")
+    private int maxConcurrent;
+
+    // Admitted questions (running + waiting) beyond which new ones are rejected
+    @Value("${answer.executor.max-pending:64}")
+    private int maxPending;
+
+    @Value("${answer.executor.max-per-user:2}")
+    private int maxPerUser;
+
+    // How long an admitted question may wait for an LLM slot before giving up
+    @Value("${answer.executor.permit-timeout-ms:30000}")
+    private long permitTimeoutMs;
+
+    private ExecutorService executor;
+    private RoundRobinPermits llmPermits;
+
+    private static final String BUSY_MESSAGE = "Server is busy answering other questions, please try again shortly";
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    // Admitted questions per user; a user is removed when their count drops to zero
+    private final Map<String, Integer> perUser = new ConcurrentHashMap<>();
+    // Whether the task running on this thread still holds its LLM permit
+    private final ThreadLocal<Boolean> holdsPermit = ThreadLocal.withInitial(() -> false);
+
+    private Counter rejectedGlobal;
+    private Counter rejectedPerUser;
+    private Counter timedOut;
+
+    @PostConstruct
+    void start() {
+        executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("answer-", 0).factory())
+                : Executors.newFixedThreadPool(platformThreads, Thread.ofPlatform().name("answer-", 0).daemon().factory());
+        llmPermits = new RoundRobinPermits(maxConcurrent);
+
+        Gauge.builder("answer.executor.pending", pending, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("answer.executor.active", active, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("answer.executor.queue.depth", this, s -> s.pending.get() - s.active.get()).register(meterRegistry);
+        rejectedGlobal = Counter.builder("answer.executor.rejected").tag("reason", "capacity").register(meterRegistry);
+        rejectedPerUser = Counter.builder("answer.executor.rejected").tag("reason", "per-user").register(meterRegistry);
+        timedOut = Counter.builder("answer.executor.rejected").tag("reason", "timeout").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Admit a question for the given caller and run it asynchronously.
+     *
+     * @param caller who the question counts against: the authenticated principal's name, or the
+     *               connection's session when there is none. Never a name taken from the request,
+     *               or a client could claim a fresh share with every question.
+     * @param onBusy given the busy message instead of running the task if no LLM slot frees up in time
+     * @throws ServerBusyException if the server or the caller is already at capacity
+     */
+    public void submit(String caller, Runnable task, Consumer<String> onBusy) {
+        String user = caller != null ? caller : "anonymous";
+
+        if (!admit(user)) {
+            rejectedPerUser.increment();
+            throw new ServerBusyException("You already have " + maxPerUser + " questions in progress, please wait for an answer");
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            release(user);
+            rejectedGlobal.increment();
+            throw new ServerBusyException(BUSY_MESSAGE);
+        }
+
+        try {
+            executor.execute(() -> run(user, task, onBusy));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the question was counted but will never run
+            pending.decrementAndGet();
+            release(user);
+            rejectedGlobal.increment();
+            throw new ServerBusyException(BUSY_MESSAGE);
+        }
+    }
+
+    private void run(String user, Runnable task, Consumer<String> onBusy) {
+        try {
+            if (!llmPermits.tryAcquire(user, permitTimeoutMs)) {
+                timedOut.increment();
+                onBusy.accept(BUSY_MESSAGE);
+                return;
+            }
+            active.incrementAndGet();
+            holdsPermit.set(true);
+            try {
+                task.run();
+            } finally {
+                if (holdsPermit.get()) {
+                    active.decrementAndGet();
+                    llmPermits.release();
+                }
+                holdsPermit.remove();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.decrementAndGet();
+            release(user);
+        }
+    }
+
+    /**
+     * Run a wait that does no LLM work itself (such as for another task's answer) after giving
+     * up the calling task's LLM slot, so the slot goes to a question that needs one
+     */
+    public <T> T withoutLlmSlot(Supplier<T> wait) {
+        if (holdsPermit.get()) {
+            holdsPermit.set(false);
+            active.decrementAndGet();
+            llmPermits.release();
+        }
+        return wait.get();
+    }
+
+    /**
+     * Count a question against the user unless they are at their limit. The check and the
+     * increment happen atomically for the user's entry.
+     */
+    private boolean admit(String user) {
+        AtomicBoolean admitted = new AtomicBoolean();
+        perUser.compute(user, (u, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= maxPerUser) {
+                return count;
+            }
+            admitted.set(true);
+            return current + 1;
+        });
+        return admitted.get();
+    }
+
+    private void release(String user) {
+        // Drop idle users so the map doesn't grow with every username ever seen
+        perUser.computeIfPresent(user, (u, count) -> count > 1 ? count - 1 : null);
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Admitted questions waiting for an LLM slot
+     */
+    public int getWaiting() {
+        return llmPermits.waiting();
+    }
+
+    /**
+     * LLM slots handed out round-robin across users. When a slot frees up it goes to the first
+     * user in turn order with a waiting question, and that user moves to the back of the order.
+     * A user's own questions are served in arrival order.
+     */
+    private static final class RoundRobinPermits {
+
+        private final Object lock = new Object();
+        // Users with waiting questions, in turn order
+        private final LinkedHashMap<String, ArrayDeque<CountDownLatch>> waiting = new LinkedHashMap<>();
+        private int available;
+
+        RoundRobinPermits(int permits) {
+            this.available = permits;
+        }
+
+        boolean tryAcquire(String user, long timeoutMs) throws InterruptedException {
+            CountDownLatch turn = new CountDownLatch(1);
+            synchronized (lock) {
+                if (available > 0 && waiting.isEmpty()) {
+                    available--;
+                    return true;
+                }
+                waiting.computeIfAbsent(user, u -> new ArrayDeque<>()).add(turn);
+            }
+            try {
+                if (turn.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                if (!withdraw(user, turn)) {
+                    // Handed a slot while being interrupted; pass it on
+                    release();
+                }
+                throw e;
+            }
+            // A slot may have been handed over between the timeout and withdrawing
+            return !withdraw(user, turn);
+        }
+
+        void release() {
+            synchronized (lock) {
+                Iterator<Map.Entry<String, ArrayDeque<CountDownLatch>>> users = waiting.entrySet().iterator();
+                if (!users.hasNext()) {
+                    available++;
+                    return;
+                }
+                Map.Entry<String, ArrayDeque<CountDownLatch>> next = users.next();
+                users.remove();
+                CountDownLatch turn = next.getValue().poll();
+                if (!next.getValue().isEmpty()) {
+                    waiting.put(next.getKey(), next.getValue());
+                }
+                turn.countDown();
+            }
+        }
+
+        /**
+         * Stop waiting; false if the slot was already handed over
+         */
+        private boolean withdraw(String user, CountDownLatch turn) {
+            synchronized (lock) {
+                ArrayDeque<CountDownLatch> queue = waiting.get(user);
+                if (queue == null || !queue.remove(turn)) {
+                    return false;
+                }
+                if (queue.isEmpty()) {
+                    waiting.remove(user);
+                }
+                return true;
+            }
+        }
+
+        int waiting() {
+            synchronized (lock) {
+                return waiting.values().stream().mapToInt(ArrayDeque::size).sum();
+            }
+        }
+    }
+}
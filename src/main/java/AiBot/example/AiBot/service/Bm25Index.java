@@ -0,0 +1,274 @@
+package AiBot.example.AiBot.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Immutable in-memory inverted index over the chunks of one document (or of a whole corpus),
+ * ranked with Okapi BM25.
+ *
+ * Postings are kept as parallel primitive int arrays (chunk id, term frequency) per term, so a
+ * query only touches the chunks that contain one of its terms and never re-scans chunk text.
+ */
+public class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Words too common to say anything about relevance
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from", "how",
+            "i", "in", "is", "it", "me", "my", "of", "on", "or", "that", "the", "this", "to", "was",
+            "what", "when", "where", "which", "who", "why", "will", "with", "you", "your");
+
+    private final List<String> chunks;
+    private final Map<String, Integer> termIds;
+    private final int[][] postingChunks;
+    private final int[][] postingFrequencies;
+    private final int[] chunkLengths;
+    private final float averageChunkLength;
+
+    public record Hit(int chunk, float score) {}
+
+    private Bm25Index(List<String> chunks, Map<String, Integer> termIds, int[][] postingChunks,
+                      int[][] postingFrequencies, int[] chunkLengths) {
+        this.chunks = chunks;
+        this.termIds = termIds;
+        this.postingChunks = postingChunks;
+        this.postingFrequencies = postingFrequencies;
+        this.chunkLengths = chunkLengths;
+
+        long total = 0;
+        for (int length : chunkLengths) {
+            total += length;
+        }
+        this.averageChunkLength = chunkLengths.length == 0 ? 0 : (float) total / chunkLengths.length;
+    }
+
+    /**
+     * Tokenize every chunk once and build the postings lists
+     */
+    public static Bm25Index build(List<String> chunks) {
+        return index(List.copyOf(chunks));
+    }
+
+    /**
+     * Index a mapped chunk segment; chunk text stays in the segment instead of on the heap
+     */
+    public static Bm25Index build(ChunkSegment segment) {
+        return buildMapped(segment);
+    }
+
+    /**
+     * Index mapped chunks (one segment, or a view over several) without copying their text to the
+     * heap; the list must not change afterwards
+     */
+    static Bm25Index buildMapped(List<String> chunks) {
+        return index(chunks);
+    }
+
+    private static Bm25Index index(List<String> chunks) {
+        Map<String, Integer> termIds = new HashMap<>();
+        List<int[]> chunkIds = new ArrayList<>();
+        List<int[]> frequencies = new ArrayList<>();
+        List<Integer> postingSizes = new ArrayList<>();
+        int[] chunkLengths = new int[chunks.size()];
+
+        Map<String, Integer> chunkTerms = new HashMap<>();
+        for (int chunk = 0; chunk < chunks.size(); chunk++) {
+            chunkTerms.clear();
+            int[] length = new int[1];
+            tokenize(chunks.get(chunk), token -> {
+                chunkTerms.merge(token, 1, Integer::sum);
+                length[0]++;
+            });
+            chunkLengths[chunk] = length[0];
+
+            for (Map.Entry<String, Integer> entry : chunkTerms.entrySet()) {
+                int termId = termIds.computeIfAbsent(entry.getKey(), term -> {
+                    chunkIds.add(new int[4]);
+                    frequencies.add(new int[4]);
+                    postingSizes.add(0);
+                    return termIds.size();
+                });
+
+                // Chunks are visited in order, so each postings list stays sorted by chunk id
+                int size = postingSizes.get(termId);
+                if (size == chunkIds.get(termId).length) {
+                    chunkIds.set(termId, Arrays.copyOf(chunkIds.get(termId), size * 2));
+                    frequencies.set(termId, Arrays.copyOf(frequencies.get(termId), size * 2));
+                }
+                chunkIds.get(termId)[size] = chunk;
+                frequencies.get(termId)[size] = entry.getValue();
+                postingSizes.set(termId, size + 1);
+            }
+        }
+
+        int[][] postingChunks = new int[termIds.size()][];
+        int[][] postingFrequencies = new int[termIds.size()][];
+        for (int termId = 0; termId < postingChunks.length; termId++) {
+            postingChunks[termId] = Arrays.copyOf(chunkIds.get(termId), postingSizes.get(termId));
+            postingFrequencies[termId] = Arrays.copyOf(frequencies.get(termId), postingSizes.get(termId));
+        }
+
+        return new Bm25Index(chunks, termIds, postingChunks, postingFrequencies, chunkLengths);
+    }
+
+    /**
+     * The k best-scoring chunks for the query, highest score first. Chunks sharing no term with
+     * the query are never returned.
+     */
+    public List<Hit> search(String query, int k) {
+        if (k <= 0 || chunks.isEmpty()) {
+            return List.of();
+        }
+
+        Set<String> queryTerms = new LinkedHashSet<>();
+        tokenize(query, queryTerms::add);
+
+        float[] scores = new float[chunks.size()];
+        int[] touched = new int[chunks.size()];
+        int touchedCount = 0;
+
+        for (String term : queryTerms) {
+            Integer termId = termIds.get(term);
+            if (termId == null) {
+                continue;
+            }
+            int[] postings = postingChunks[termId];
+            int[] tfs = postingFrequencies[termId];
+            float idf = idf(postings.length);
+
+            for (int i = 0; i < postings.length; i++) {
+                int chunk = postings[i];
+                float tf = tfs[i];
+                float norm = K1 * (1 - B + B * chunkLengths[chunk] / averageChunkLength);
+                if (scores[chunk] == 0) {
+                    touched[touchedCount++] = chunk;
+                }
+                scores[chunk] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        return topK(scores, touched, touchedCount, k);
+    }
+
+    public String chunk(int chunk) {
+        return chunks.get(chunk);
+    }
+
+    public List<String> chunks() {
+        return chunks;
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    /**
+     * BM25 idf with the +1 inside the log so it never goes negative for very common terms
+     */
+    private float idf(int documentFrequency) {
+        return (float) Math.log(1 + (chunks.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * Select the k highest scores with a bounded min-heap, then emit them in descending order
+     */
+    private static List<Hit> topK(float[] scores, int[] candidates, int candidateCount, int k) {
+        int capacity = Math.min(k, candidateCount);
+        int[] heap = new int[capacity];
+        int size = 0;
+
+        for (int i = 0; i < candidateCount; i++) {
+            int chunk = candidates[i];
+            if (size < capacity) {
+                heap[size] = chunk;
+                siftUp(heap, size++, scores);
+            } else if (better(chunk, heap[0], scores)) {
+                heap[0] = chunk;
+                siftDown(heap, size, scores);
+            }
+        }
+
+        Hit[] hits = new Hit[size];
+        while (size > 0) {
+            int chunk = heap[0];
+            hits[--size] = new Hit(chunk, scores[chunk]);
+            heap[0] = heap[size];
+            siftDown(heap, size, scores);
+        }
+        return Arrays.asList(hits);
+    }
+
+    // Higher score wins; ties go to the earlier chunk so results are deterministic
+    private static boolean better(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!better(heap[parent], heap[index], scores)) {
+                break;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            int right = left + 1;
+            int worst = index;
+            if (left < size && better(heap[worst], heap[left], scores)) {
+                worst = left;
+            }
+            if (right < size && better(heap[worst], heap[right], scores)) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    /**
+     * Split text into lowercase runs of letters and digits, dropping stop words and single characters
+     */
+    static void tokenize(String text, Consumer<String> sink) {
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start > 1) {
+                    String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                    if (!STOP_WORDS.contains(token)) {
+                        sink.accept(token);
+                    }
+                }
+                start = -1;
+            }
+        }
+    }
+}
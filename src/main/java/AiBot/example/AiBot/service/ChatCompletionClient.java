@@ -0,0 +1,109 @@
+package AiBot.example.AiBot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Client for the OpenAI chat completions endpoint, with blocking and streaming (SSE) modes.
+ */
+@Component
+public class ChatCompletionClient {
+
+    @Autowired
+    private LlmHttpClient llmHttpClient;
+
+    @Value("${spring.ai.openai.chat.options.model:gpt-4o-mini}")
+    private String model;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Run a completion and return the whole answer
+     */
+    @SuppressWarnings("unchecked")
+    public String complete(List<Map<String, Object>> messages, int maxTokens, double temperature) {
+        Map<String, Object> requestBody = requestBody(messages, maxTokens, temperature, false);
+
+        Map<String, Object> response = llmHttpClient.postJson("/v1/chat/completions", requestBody,
+                body -> objectMapper.readValue(body, Map.class));
+
+        if (response != null) {
+            List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
+            if (choices != null && !choices.isEmpty()) {
+                Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
+                return (String) message.get("content");
+            }
+        }
+
+        throw new RuntimeException("Failed to generate answer from OpenAI.");
+    }
+
+    /**
+     * Run a completion with stream=true, passing each content delta to onDelta as it arrives.
+     * Returns the full answer once the stream ends.
+     */
+    public String stream(List<Map<String, Object>> messages, int maxTokens, double temperature, Consumer<String> onDelta) {
+        Map<String, Object> requestBody = requestBody(messages, maxTokens, temperature, true);
+
+        return llmHttpClient.postForEventStream("/v1/chat/completions", requestBody,
+                body -> readStream(body, onDelta));
+    }
+
+    /**
+     * Read an SSE completion stream: "data: {json}" events terminated by "data: [DONE]". A stream
+     * that ends without [DONE] was cut off, and its partial answer is an error, not an answer.
+     */
+    String readStream(InputStream body, Consumer<String> onDelta) throws IOException {
+        StringBuilder answer = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                return answer.toString();
+            }
+            if (data.isEmpty()) {
+                continue;
+            }
+
+            JsonNode choices = objectMapper.readTree(data).path("choices");
+            if (choices.isArray() && !choices.isEmpty()) {
+                JsonNode content = choices.get(0).path("delta").path("content");
+                if (content.isTextual() && !content.asText().isEmpty()) {
+                    String delta = content.asText();
+                    answer.append(delta);
+                    onDelta.accept(delta);
+                }
+            }
+        }
+
+        throw new IOException("Completion stream ended before [DONE] after " + answer.length() + " characters");
+    }
+
+    private Map<String, Object> requestBody(List<Map<String, Object>> messages, int maxTokens, double temperature, boolean stream) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("messages", messages);
+        requestBody.put("max_tokens", maxTokens);
+        requestBody.put("temperature", temperature);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
+        return requestBody;
+    }
+}
@@ -0,0 +1,6 @@
+package AiBot.example.AiBot.service;
+
+/**
+ * What storing a document's chunks changed: chunks inserted (and embedded), removed, and kept as they were
+ */
+public record ChunkChanges(int added, int removed, int unchanged) {}
@@ -0,0 +1,95 @@
+package AiBot.example.AiBot.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of a document's chunks backed by a memory-mapped segment file.
+ *
+ * Layout: magic, version and chunk count (ints), an offset table of count + 1 ints, then the
+ * chunks as concatenated UTF-8. Only the mapping is held; a chunk is decoded when it is read.
+ */
+public class ChunkSegment extends AbstractList<String> implements RandomAccess {
+
+    private static final int MAGIC = 0x43484B53; // "CHKS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int dataStart;
+
+    private ChunkSegment(MappedByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+        this.dataStart = HEADER_BYTES + (count + 1) * Integer.BYTES;
+    }
+
+    /**
+     * Write chunks to a segment file, replacing it atomically
+     */
+    public static void write(Path file, List<String> chunks) throws IOException {
+        byte[][] encoded = new byte[chunks.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = chunks.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(encoded.length);
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] chunk : encoded) {
+                offset += chunk.length;
+                out.writeInt(offset);
+            }
+            for (byte[] chunk : encoded) {
+                out.write(chunk);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map a segment file written by {@link #write}
+     */
+    public static ChunkSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Unrecognized chunk segment " + file);
+            }
+            return new ChunkSegment(buffer, buffer.getInt(8));
+        }
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Chunk " + index + " of " + count);
+        }
+        int start = buffer.getInt(HEADER_BYTES + index * Integer.BYTES);
+        int end = buffer.getInt(HEADER_BYTES + (index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        buffer.get(dataStart + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+}
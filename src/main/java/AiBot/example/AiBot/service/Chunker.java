@@ -0,0 +1,18 @@
+package AiBot.example.AiBot.service;
+
+import java.util.List;
+
+/**
+ * Splits extracted document text into the chunks that get embedded and indexed.
+ *
+ * Chunks never span a paragraph break (a blank line), so text that arrives in pieces can be
+ * chunked paragraph by paragraph with the same result (see {@link ParagraphChunkStream}).
+ */
+@FunctionalInterface
+public interface Chunker {
+
+    /**
+     * Chunks of the text in document order; blank text gives no chunks
+     */
+    List<String> chunk(String text);
+}
@@ -0,0 +1,46 @@
+package AiBot.example.AiBot.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configured chunkers: one for documents that are embedded, and a smaller one for the BM25
+ * fallback, where shorter chunks make better answer excerpts.
+ */
+@Component
+public class ChunkingSettings {
+
+    @Value("${chunking.max-tokens:256}")
+    private int maxTokens;
+
+    @Value("${chunking.overlap-tokens:32}")
+    private int overlapTokens;
+
+    @Value("${chunking.fallback.max-tokens:128}")
+    private int fallbackMaxTokens;
+
+    @Value("${chunking.fallback.overlap-tokens:16}")
+    private int fallbackOverlapTokens;
+
+    // Documents longer than this are chunked in parallel fork-join tasks
+    @Value("${chunking.parallel-threshold-chars:1048576}")
+    private int parallelThresholdChars;
+
+    private Chunker documentChunker;
+    private Chunker fallbackChunker;
+
+    @PostConstruct
+    void start() {
+        documentChunker = new TokenChunker(maxTokens, overlapTokens, parallelThresholdChars);
+        fallbackChunker = new TokenChunker(fallbackMaxTokens, fallbackOverlapTokens, parallelThresholdChars);
+    }
+
+    public Chunker documentChunker() {
+        return documentChunker;
+    }
+
+    public Chunker fallbackChunker() {
+        return fallbackChunker;
+    }
+}
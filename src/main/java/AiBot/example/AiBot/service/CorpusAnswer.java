@@ -0,0 +1,8 @@
+package AiBot.example.AiBot.service;
+
+import java.util.List;
+
+/**
+ * Answer to a corpus-wide question and the chunks it was built from; source n is cited as [n]
+ */
+public record CorpusAnswer(String answer, List<RetrievedChunk> sources) {}
@@ -1,15 +1,29 @@
 package AiBot.example.AiBot.service;
 
 import AiBot.example.AiBot.model.Document;
+import AiBot.example.AiBot.model.DocumentContent;
+import AiBot.example.AiBot.model.IngestionJob;
+import AiBot.example.AiBot.model.SummaryJob;
+import AiBot.example.AiBot.repository.DocumentContentRepository;
 import AiBot.example.AiBot.repository.DocumentRepository;
+import AiBot.example.AiBot.repository.DocumentSummaryView;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class DocumentService {
@@ -21,7 +35,10 @@ public class DocumentService {
     private FileUtil fileUtil;
 
     @Autowired
-    private ChatService chatService;
+    private IngestionService ingestionService;
+
+    @Autowired
+    private SummaryService summaryService;
 
     @Autowired(required = false)
     private VectorRagService vectorRagService;
@@ -29,10 +46,22 @@ public class DocumentService {
     @Autowired(required = false)
     private FallbackRagService fallbackRagService;
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "fileName", "uploadedBy", "uploadedAt", "status");
+
+    @Autowired
+    private DocumentContentRepository documentContentRepository;
+
     @Value("${file.upload-dir}")
     private String uploadDir;
 
-    public Document uploadDocument(MultipartFile file, String uploadedBy) throws IOException {
+    // Striped by content hash: uploads of the same file take turns, so two can't both miss the duplicate check
+    private final Object[] contentLocks = Stream.generate(Object::new).limit(64).toArray();
+
+    /**
+     * Store the uploaded file and queue it for ingestion. Returns before the document is processed.
+     */
+    public UploadResult uploadDocument(MultipartFile file, String uploadedBy, Set<String> tags) throws IOException {
         // Validate file
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File cannot be empty");
@@ -45,80 +74,272 @@ public class DocumentService {
         System.out.println("Uploading file: " + file.getOriginalFilename() + " by user: " + uploadedBy);
         System.out.println("Upload directory: " + uploadDir);
 
-        // Save file to local storage
-        String filePath = fileUtil.saveFile(file, uploadDir);
-        System.out.println("File saved to: " + filePath);
-        
-        // Extract text content
-        String content = fileUtil.extractTextContent(file);
-        System.out.println("Content extracted, length: " + (content != null ? content.length() : 0));
+        // Save file to local storage; it is written once and every later step reads the stored copy
+        FileUtil.StoredFile storedFile = fileUtil.saveFile(file, uploadDir);
+        String filePath = storedFile.path();
+        System.out.println("File saved to: " + filePath + " (" + storedFile.size() + " bytes)");
+
+        synchronized (contentLock(storedFile.sha256())) {
+            return createOrReuse(file, uploadedBy, tags, storedFile);
+        }
+    }
+
+    /**
+     * The check-then-insert half of an upload; callers hold the content hash's lock
+     */
+    private UploadResult createOrReuse(MultipartFile file, String uploadedBy, Set<String> tags,
+                                       FileUtil.StoredFile storedFile) {
+        String filePath = storedFile.path();
 
-        // Create document entity
+        // An identical file that was (or is being) processed already answers for this upload
+        Optional<Document> existing = documentRepository
+                .findFirstByContentHashAndStatusNotOrderByIdAsc(storedFile.sha256(), IngestionJob.FAILED);
+        if (existing.isPresent()) {
+            fileUtil.deleteFile(filePath);
+            Document duplicateOf = existing.get();
+            System.out.println("Upload is identical to document " + duplicateOf.getId() + ", reusing it");
+            // Tag by tag: ingestion may be advancing the document's status meanwhile
+            for (String tag : tags) {
+                if (duplicateOf.getTags().add(tag)) {
+                    documentRepository.addTag(duplicateOf.getId(), tag);
+                }
+            }
+            return new UploadResult(duplicateOf, ingestionService.getJob(duplicateOf.getId()).orElse(null), true);
+        }
+
+        // Create document entity; content, chunks and summary are filled in by the ingestion pipeline
         Document document = new Document(file.getOriginalFilename(), filePath, uploadedBy);
-        document.setContent(content);
+        document.setContentHash(storedFile.sha256());
+        document.setStatus(IngestionJob.QUEUED);
+        document.setTags(tags);
 
         // Save to database
         Document savedDocument = documentRepository.save(document);
         System.out.println("Document saved to database with ID: " + savedDocument.getId());
 
-        // Process document with RAG pipeline
         try {
-            String documentId = savedDocument.getId().toString();
-            
-            // Use appropriate RAG service (prefer vector-based RAG with OpenAI)
-            if (vectorRagService != null) {
-                vectorRagService.processDocument(content, documentId);
-            } else if (fallbackRagService != null) {
-                fallbackRagService.processDocument(content, documentId);
+            IngestionJob job = ingestionService.submit(savedDocument);
+            return new UploadResult(savedDocument, job, false);
+        } catch (IngestionQueueFullException e) {
+            documentRepository.delete(savedDocument);
+            fileUtil.deleteFile(filePath);
+            throw e;
+        }
+    }
+
+    private Object contentLock(String sha256) {
+        return contentLocks[Math.floorMod(sha256.hashCode(), contentLocks.length)];
+    }
+
+    /**
+     * Replace a document with a revised file and re-ingest it. Only chunks that changed are
+     * embedded; the stored chunks are diffed against the new version. An identical file is a
+     * no-op (duplicate in the result).
+     *
+     * The previous file is kept until the new version is READY. If the new version fails, the
+     * document is reverted to the previous one, which is ingested again.
+     */
+    public UploadResult updateDocument(Long id, MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File cannot be empty");
+        }
+        if (!documentRepository.existsById(id)) {
+            throw new IllegalArgumentException("Document not found");
+        }
+        // Claimed before reading the document, so concurrent updates can't both pass
+        IngestionJob job = ingestionService.reserve(id);
+        boolean submitted = false;
+        try {
+            Document document = documentRepository.findById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+            FileUtil.StoredFile storedFile = fileUtil.saveFile(file, uploadDir);
+            if (storedFile.sha256().equals(document.getContentHash())) {
+                fileUtil.deleteFile(storedFile.path());
+                return new UploadResult(document, null, true);
             }
-            
-            // Generate summary using AI
-            String summary = generateSummary(content);
-            savedDocument.setSummary(summary);
-            documentRepository.save(savedDocument);
-        } catch (Exception e) {
-            // Log error but don't fail the upload
-            System.err.println("Failed to process document with RAG: " + e.getMessage());
+
+            Revision previous = new Revision(document);
+            document.setFileName(file.getOriginalFilename());
+            document.setFilePath(storedFile.path());
+            document.setContentHash(storedFile.sha256());
+            document.setStatus(IngestionJob.QUEUED);
+            Document savedDocument = documentRepository.save(document);
+
+            try {
+                ingestionService.submit(savedDocument, job, new RevisionCompletion(id, previous, storedFile.path()));
+                submitted = true;
+                System.out.println("Document " + id + " revised, re-ingesting changed chunks");
+                return new UploadResult(savedDocument, job, false);
+            } catch (IngestionQueueFullException e) {
+                // Keep serving the previous version
+                previous.applyTo(savedDocument);
+                documentRepository.save(savedDocument);
+                fileUtil.deleteFile(storedFile.path());
+                throw e;
+            }
+        } finally {
+            if (!submitted) {
+                ingestionService.release(job);
+            }
+        }
+    }
+
+    /**
+     * The stored file a document pointed at before an update
+     */
+    private record Revision(String fileName, String filePath, String contentHash, String status) {
+
+        Revision(Document document) {
+            this(document.getFileName(), document.getFilePath(), document.getContentHash(), document.getStatus());
+        }
+
+        void applyTo(Document document) {
+            document.setFileName(fileName);
+            document.setFilePath(filePath);
+            document.setContentHash(contentHash);
+            document.setStatus(status);
+        }
+    }
+
+    /**
+     * Drops the previous file once the update is READY, or goes back to it if the update failed
+     */
+    private class RevisionCompletion implements IngestionService.Completion {
+        private final Long id;
+        private final Revision previous;
+        private final String newPath;
+
+        RevisionCompletion(Long id, Revision previous, String newPath) {
+            this.id = id;
+            this.previous = previous;
+            this.newPath = newPath;
         }
 
-        return savedDocument;
+        @Override
+        public void ready() {
+            fileUtil.deleteFile(previous.filePath());
+        }
+
+        @Override
+        public boolean failed() {
+            if (IngestionJob.FAILED.equals(previous.status())) {
+                // Nothing worth restoring; keep the new version so it can be retried
+                fileUtil.deleteFile(previous.filePath());
+                return false;
+            }
+            Document document = documentRepository.findById(id).orElse(null);
+            if (document == null) {
+                return false;
+            }
+            previous.applyTo(document);
+            document.setStatus(IngestionJob.QUEUED);
+            documentRepository.save(document);
+            fileUtil.deleteFile(newPath);
+            System.out.println("Update of document " + id + " failed, restoring the previous version");
+            return true;
+        }
+    }
+
+    public List<DocumentSummaryView> getAllDocuments() {
+        return documentRepository.findAllProjectedBy(Sort.by("id"));
+    }
+
+    /**
+     * One page of document summaries. sort is "property" or "property,asc|desc"; ties are broken by
+     * id so pages are stable.
+     */
+    public Page<DocumentSummaryView> getDocumentPage(int page, int size, String sort) {
+        if (page < 0) {
+            throw new IllegalArgumentException("page must not be negative");
+        }
+        return documentRepository.findAllProjectedBy(PageRequest.of(page, pageSize(size), parseSort(sort)));
+    }
+
+    /**
+     * Keyset pagination, newest first: the documents uploaded before afterId (null for the first
+     * page). Unlike offsets, the cost doesn't grow with the page number.
+     */
+    public List<DocumentSummaryView> scrollDocuments(Long afterId, int size) {
+        Limit limit = Limit.of(pageSize(size));
+        return afterId == null
+                ? documentRepository.findAllProjectedByOrderByIdDesc(limit)
+                : documentRepository.findByIdLessThanOrderByIdDesc(afterId, limit);
+    }
+
+    private static int pageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return size;
     }
 
-    public List<Document> getAllDocuments() {
-        return documentRepository.findAll();
+    private static Sort parseSort(String sort) {
+        String[] parts = sort.split(",");
+        String property = parts[0].trim();
+        if (!SORTABLE_PROPERTIES.contains(property)) {
+            throw new IllegalArgumentException("Cannot sort documents by " + property);
+        }
+        Sort.Direction direction = parts.length > 1
+                ? Sort.Direction.fromString(parts[1].trim())
+                : Sort.Direction.ASC;
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
     }
 
     public Optional<Document> getDocumentById(Long id) {
         return documentRepository.findById(id);
     }
 
-    public String generateSummary(String content) {
-        if (content == null || content.trim().isEmpty()) {
-            return "No content available for summarization.";
+    /**
+     * Ingestion status of a document: the live job if one is tracked, otherwise the persisted status
+     */
+    public Map<String, Object> getDocumentStatus(Long id) {
+        Optional<IngestionJob> job = ingestionService.getJob(id);
+        if (job.isPresent()) {
+            return ingestionService.toStatusMap(job.get());
         }
 
-        // Limit content length to avoid token limits
-        String limitedContent = content.length() > 4000 ? content.substring(0, 4000) + "..." : content;
+        Document document = documentRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+        // Documents uploaded before the ingestion pipeline existed have no status
+        String status = document.getStatus() != null ? document.getStatus() : IngestionJob.READY;
 
-        String promptText = String.format(
-            "Please provide a concise summary of the following document content in 2-3 sentences:\n\n%s",
-            limitedContent
-        );
+        Map<String, Object> response = new HashMap<>();
+        response.put("documentId", id);
+        response.put("status", status);
+        response.put("progress", IngestionJob.progressOf(status));
+        return response;
+    }
 
-        try {
-            String response = chatService.generateResponse(promptText);
-            return response != null ? response.trim() : "Summary generation failed.";
-        } catch (Exception e) {
-            return "Summary generation failed: " + e.getMessage();
+    /**
+     * The document's summary, with live progress while it is still being generated
+     */
+    public Map<String, Object> getDocumentSummary(Long id) {
+        Document document = documentRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+
+        Map<String, Object> response = new HashMap<>();
+        Optional<SummaryJob> job = summaryService.getJob(id);
+        if (job.isPresent()) {
+            response.putAll(summaryService.toStatusMap(job.get()));
+        } else if (document.getSummaryStatus() != null) {
+            response.put("summaryStatus", document.getSummaryStatus());
+        } else {
+            // Summaries written before background summarization existed have no status
+            response.put("summaryStatus", document.getSummary() != null ? SummaryJob.READY : SummaryJob.PENDING);
         }
+        response.put("documentId", id);
+        response.put("fileName", document.getFileName());
+        response.put("summary", document.getSummary());
+        return response;
     }
 
     public String getDocumentContent(Long documentId) throws IOException {
         Document document = documentRepository.findById(documentId)
                 .orElseThrow(() -> new IllegalArgumentException("Document not found"));
 
-        if (document.getContent() != null && !document.getContent().isEmpty()) {
-            return document.getContent();
+        Optional<DocumentContent> content = documentContentRepository.findById(documentId);
+        if (content.isPresent() && content.get().getContent() != null && !content.get().getContent().isEmpty()) {
+            return content.get().getContent();
         }
 
         // Fallback to reading from file
@@ -126,14 +347,23 @@ public class DocumentService {
     }
 
     public String askQuestionAboutDocument(String question, Long documentId) {
+        return askQuestionAboutDocument(question, documentId, null);
+    }
+
+    /**
+     * Answer a question with per-request retrieval options; null means the configured defaults
+     */
+    public String askQuestionAboutDocument(String question, Long documentId, RetrievalOptions options) {
         try {
             String documentIdStr = documentId.toString();
             
             // Use appropriate RAG service (prefer vector-based RAG with OpenAI)
             if (vectorRagService != null) {
-                return vectorRagService.askQuestion(question, documentIdStr);
+                return vectorRagService.askQuestion(question, documentIdStr, options);
             } else if (fallbackRagService != null) {
-                return fallbackRagService.askQuestion(question, documentIdStr);
+                return options != null
+                        ? fallbackRagService.askQuestion(question, documentIdStr, options.topK())
+                        : fallbackRagService.askQuestion(question, documentIdStr);
             } else {
                 return "RAG service not available.";
             }
@@ -141,4 +371,41 @@ public class DocumentService {
             return "Error processing question: " + e.getMessage();
         }
     }
+
+    /**
+     * Answer a question, passing answer text to onDelta as it is generated. The vector RAG path
+     * streams tokens; other paths deliver the whole answer as a single delta.
+     */
+    public String askQuestionAboutDocumentStreaming(String question, Long documentId, RetrievalOptions options,
+                                                    Consumer<String> onDelta) {
+        if (vectorRagService != null) {
+            return vectorRagService.askQuestionStreaming(question, documentId.toString(), options, onDelta);
+        }
+
+        String answer = askQuestionAboutDocument(question, documentId, options);
+        onDelta.accept(answer);
+        return answer;
+    }
+
+    /**
+     * Answer a question across several documents; null documentIds means the whole knowledge base
+     */
+    public CorpusAnswer askAcrossDocuments(String question, List<Long> documentIds, RetrievalOptions options) {
+        List<String> ids = documentIds != null ? documentIds.stream().map(String::valueOf).toList() : null;
+
+        if (vectorRagService != null) {
+            return vectorRagService.askAcrossDocuments(question, ids, options);
+        } else if (fallbackRagService != null) {
+            return options != null
+                    ? fallbackRagService.askAcrossDocuments(question, ids, options.topK())
+                    : fallbackRagService.askAcrossDocuments(question, ids);
+        }
+        return new CorpusAnswer("RAG service not available.", List.of());
+    }
+
+    /**
+     * The document an upload maps to; duplicate means an identical file existed, and job is null
+     * when that document is no longer being processed
+     */
+    public record UploadResult(Document document, IngestionJob job, boolean duplicate) {}
 }
@@ -0,0 +1,148 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of float[]-backed embeddings keyed by the SHA-256 of the text, bounded by a byte budget.
+ */
+@Component
+public class EmbeddingCache {
+
+    // Approximate per-entry overhead: map node, 64-char hex key, Embedding and float[] headers
+    private static final long ENTRY_OVERHEAD_BYTES = 200;
+
+    @Value("${embedding.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Embedding> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("embedding.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("embedding.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("embedding.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("embedding.cache.bytes", this, EmbeddingCache::currentBytes).register(meterRegistry);
+        Gauge.builder("embedding.cache.size", this, EmbeddingCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Look up the cached embedding for a text, or null on a miss
+     */
+    public Embedding get(String text) {
+        return getByHash(hash(text));
+    }
+
+    /**
+     * Look up by the text's {@link #hash}, for callers that already have it
+     */
+    public Embedding getByHash(String key) {
+        Embedding embedding;
+        synchronized (this) {
+            embedding = entries.get(key);
+        }
+        (embedding != null ? hits : misses).incrementAndGet();
+        return embedding;
+    }
+
+    public void put(String text, Embedding embedding) {
+        putByHash(hash(text), embedding);
+    }
+
+    public void putByHash(String key, Embedding embedding) {
+        long entryBytes = sizeOf(embedding);
+        if (entryBytes > maxBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            Embedding previous = entries.put(key, embedding);
+            if (previous != null) {
+                currentBytes -= sizeOf(previous);
+            }
+            currentBytes += entryBytes;
+
+            Iterator<Map.Entry<String, Embedding>> eldest = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                currentBytes -= sizeOf(eldest.next().getValue());
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized long currentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static long sizeOf(Embedding embedding) {
+        return ENTRY_OVERHEAD_BYTES + embedding.sizeInBytes();
+    }
+
+    /**
+     * The hash of each text, in order. Ingestion computes them once and passes them along.
+     */
+    static List<String> hashAll(List<String> texts) {
+        List<String> hashes = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            hashes.add(hash(text));
+        }
+        return hashes;
+    }
+
+    static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Client for the OpenAI embeddings endpoint that packs many inputs into each request.
+ */
+@Component
+public class EmbeddingClient {
+
+    @Autowired
+    private LlmHttpClient llmHttpClient;
+
+    @Value("${spring.ai.openai.embedding.options.model:text-embedding-3-small}")
+    private String model;
+
+    // OpenAI accepts up to 2048 inputs and 300k tokens per embeddings request
+    @Value("${openai.embedding.batch.max-inputs:256}")
+    private int maxInputsPerRequest;
+
+    @Value("${openai.embedding.batch.max-tokens:250000}")
+    private int maxTokensPerRequest;
+
+    @Value("${openai.embedding.batch.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${openai.embedding.batch.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    // The fast float parser reads numbers from the parser's buffer instead of allocating a String per value
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .build();
+
+    /**
+     * Generate an embedding for a single text
+     */
+    public Embedding embed(String text) {
+        return embedAll(List.of(text)).get(0);
+    }
+
+    /**
+     * Generate embeddings for all texts, returned in the same order as the input
+     */
+    public List<Embedding> embedAll(List<String> texts) {
+        List<Embedding> results = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        if (texts.isEmpty()) {
+            return results;
+        }
+
+        List<Batch> pending = partition(texts);
+        String lastError = null;
+
+        for (int attempt = 1; attempt <= maxAttempts && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                sleepBeforeRetry(attempt);
+            }
+
+            // Only the sub-batches that failed in the previous round are sent again
+            List<Batch> failed = new ArrayList<>();
+            for (Batch batch : pending) {
+                try {
+                    List<Embedding> embeddings = requestEmbeddings(texts.subList(batch.start, batch.end));
+                    for (int i = 0; i < embeddings.size(); i++) {
+                        results.set(batch.start + i, embeddings.get(i));
+                    }
+                } catch (Exception e) {
+                    lastError = e.getMessage();
+                    failed.add(batch);
+                }
+            }
+
+            if (!failed.isEmpty()) {
+                System.err.println("Embedding attempt " + attempt + ": " + failed.size() + " of "
+                        + pending.size() + " batches failed: " + lastError);
+            }
+            pending = failed;
+        }
+
+        if (!pending.isEmpty()) {
+            throw new RuntimeException("Error calling OpenAI embedding API: " + lastError);
+        }
+
+        return results;
+    }
+
+    /**
+     * Split texts into contiguous batches that respect the per-request input and token limits
+     */
+    List<Batch> partition(List<String> texts) {
+        List<Batch> batches = new ArrayList<>();
+        int start = 0;
+        int tokens = 0;
+
+        for (int i = 0; i < texts.size(); i++) {
+            int textTokens = estimateTokens(texts.get(i));
+            boolean full = i - start >= maxInputsPerRequest || tokens + textTokens > maxTokensPerRequest;
+            if (full && i > start) {
+                batches.add(new Batch(start, i));
+                start = i;
+                tokens = 0;
+            }
+            tokens += textTokens;
+        }
+        batches.add(new Batch(start, texts.size()));
+
+        return batches;
+    }
+
+    /**
+     * Rough token estimate (~4 characters per token for English text), rounded up
+     */
+    static int estimateTokens(String text) {
+        return text.length() / 4 + 1;
+    }
+
+    private List<Embedding> requestEmbeddings(List<String> inputs) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("input", inputs);
+
+        List<Embedding> embeddings = llmHttpClient.postJson("/v1/embeddings", requestBody,
+                body -> readEmbeddings(body, inputs.size()));
+
+        if (embeddings == null || embeddings.contains(null)) {
+            throw new RuntimeException("Response is missing embeddings for some inputs");
+        }
+        return embeddings;
+    }
+
+    /**
+     * Stream-parse an embeddings response straight into float arrays, without building
+     * an intermediate tree of boxed Doubles. Embeddings are placed by their reported index.
+     */
+    static List<Embedding> readEmbeddings(InputStream body, int expected) throws IOException {
+        List<Embedding> embeddings = new ArrayList<>(Collections.nCopies(expected, null));
+
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected JSON object in embeddings response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("data".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                    float[] buffer = new float[1536];
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        buffer = readDataItem(parser, embeddings, buffer);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return embeddings;
+    }
+
+    private static float[] readDataItem(JsonParser parser, List<Embedding> embeddings, float[] buffer) throws IOException {
+        int index = -1;
+        float[] values = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("index".equals(field)) {
+                index = parser.getIntValue();
+            } else if ("embedding".equals(field) && token == JsonToken.START_ARRAY) {
+                int length = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    buffer[length++] = parser.getFloatValue();
+                }
+                values = Arrays.copyOf(buffer, length);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (index < 0 || index >= embeddings.size() || values == null) {
+            throw new IOException("Malformed embedding item in response (index " + index + ")");
+        }
+        embeddings.set(index, new Embedding(values));
+        return buffer;
+    }
+
+    private void sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMs * (1L << (attempt - 2)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying embedding request", e);
+        }
+    }
+
+    record Batch(int start, int end) {}
+}
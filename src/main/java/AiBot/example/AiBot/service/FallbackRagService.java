@@ -1,103 +1,108 @@
 package AiBot.example.AiBot.service;
 
-import org.springframework.context.annotation.Profile;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 @Service
 public class FallbackRagService {
 
-    // In-memory storage for document chunks
-    private final Map<String, List<String>> documentChunks = new ConcurrentHashMap<>();
-    private final Map<String, String> documentContents = new ConcurrentHashMap<>();
+    private static final String SEGMENT_SUFFIX = ".chunks";
+    private static final Pattern SAFE_DOCUMENT_ID = Pattern.compile("[A-Za-z0-9_-]+");
 
-    public void processDocument(String content, String documentId) {
-        // Store full content
-        documentContents.put(documentId, content);
-        
-        // Improved chunking with smaller chunks
-        List<String> chunkList = new ArrayList<>();
-        
-        // Split by paragraphs first
-        String[] paragraphs = content.split("\n\n");
-        
-        for (String paragraph : paragraphs) {
-            paragraph = paragraph.trim();
-            if (!paragraph.isEmpty()) {
-                // If paragraph is too long, split it further
-                if (paragraph.length() > 500) { // Reduced from 1000 to 500
-                    chunkList.addAll(splitLongParagraph(paragraph));
-                } else {
-                    chunkList.add(paragraph);
+    @Autowired
+    private ChunkingSettings chunkingSettings;
+
+    @Value("${fallback.search.top-k:3}")
+    private int topK;
+
+    // Chunks of each document are kept in a memory-mapped segment file here
+    @Value("${fallback.store.path:./data/fallback}")
+    private String storePath;
+
+    // BM25 indexes kept for single-document questions; the least recently used are dropped
+    @Value("${fallback.index.max-documents:100}")
+    private int maxIndexedDocuments;
+
+    private Path storeDirectory;
+
+    // Documents with a segment on disk; their BM25 index is built on the first question
+    private final Set<String> storedDocuments = ConcurrentHashMap.newKeySet();
+    private Cache<String, Bm25Index> documentIndexes;
+
+    // One index over every stored document for questions across the whole corpus, rebuilt on the
+    // first such question after the stored documents change
+    private final AtomicLong corpusGeneration = new AtomicLong();
+    private volatile CorpusIndex corpusIndex;
+
+    @PostConstruct
+    void openStore() {
+        storeDirectory = Paths.get(storePath).toAbsolutePath().normalize();
+        documentIndexes = Caffeine.newBuilder().maximumSize(maxIndexedDocuments).build();
+        try {
+            Files.createDirectories(storeDirectory);
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(storeDirectory, "*" + SEGMENT_SUFFIX)) {
+                for (Path segment : segments) {
+                    String name = segment.getFileName().toString();
+                    storedDocuments.add(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
                 }
             }
+            System.out.println("Fallback RAG: " + storedDocuments.size() + " stored documents in " + storeDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening fallback chunk store " + storeDirectory, e);
         }
-        
-        documentChunks.put(documentId, chunkList);
-        System.out.println("Fallback RAG: Processed document " + documentId + " into " + chunkList.size() + " chunks");
     }
 
-    private List<String> splitLongParagraph(String paragraph) {
-        List<String> chunks = new ArrayList<>();
-        int maxLength = 500; // Reduced chunk size
-        
-        if (paragraph.length() <= maxLength) {
-            chunks.add(paragraph);
-            return chunks;
-        }
-        
-        // Split by sentences
-        String[] sentences = paragraph.split("(?<=[.!?])\\s+");
-        StringBuilder currentChunk = new StringBuilder();
-        
-        for (String sentence : sentences) {
-            if (currentChunk.length() + sentence.length() > maxLength) {
-                if (currentChunk.length() > 0) {
-                    chunks.add(currentChunk.toString().trim());
-                    currentChunk = new StringBuilder();
-                }
-            }
-            currentChunk.append(sentence).append(" ");
-        }
-        
-        if (currentChunk.length() > 0) {
-            chunks.add(currentChunk.toString().trim());
+    public void processDocument(String content, String documentId) {
+        List<String> chunkList = chunkingSettings.fallbackChunker().chunk(content);
+
+        try {
+            Path segment = segmentPath(documentId);
+            ChunkSegment.write(segment, chunkList);
+            documentIndexes.put(documentId, Bm25Index.build(ChunkSegment.open(segment)));
+            storedDocuments.add(documentId);
+            corpusGeneration.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error storing fallback chunks for document " + documentId, e);
         }
-        
-        return chunks;
+        System.out.println("Fallback RAG: Processed document " + documentId + " into " + chunkList.size() + " chunks");
     }
 
     public String askQuestion(String question, String documentId) {
-        String content = documentContents.get(documentId);
-        if (content == null) {
+        return askQuestion(question, documentId, topK);
+    }
+
+    public String askQuestion(String question, String documentId, int topK) {
+        Bm25Index index = indexFor(documentId);
+        if (index == null) {
             return "Document not found.";
         }
 
-        // Simple keyword-based search
         String lowerQuestion = question.toLowerCase();
-        
-        // Find relevant chunks based on keyword matching
+
+        // Rank chunks with BM25 and keep the best few
         List<String> relevantChunks = new ArrayList<>();
-        List<String> chunks = documentChunks.get(documentId);
-        
-        if (chunks != null) {
-            for (String chunk : chunks) {
-                String lowerChunk = chunk.toLowerCase();
-                // Check if chunk contains any words from the question
-                String[] questionWords = lowerQuestion.split("\\s+");
-                for (String word : questionWords) {
-                    if (word.length() > 3 && lowerChunk.contains(word)) {
-                        relevantChunks.add(chunk);
-                        break;
-                    }
-                }
-            }
+        List<String> chunks = index.chunks();
+        for (Bm25Index.Hit hit : index.search(question, topK)) {
+            relevantChunks.add(index.chunk(hit.chunk()));
         }
 
         // If no relevant chunks found, use the first few paragraphs
-        if (relevantChunks.isEmpty() && chunks != null && !chunks.isEmpty()) {
+        if (relevantChunks.isEmpty() && !chunks.isEmpty()) {
             relevantChunks = chunks.subList(0, Math.min(3, chunks.size()));
         }
 
@@ -135,8 +140,168 @@ public class FallbackRagService {
         return response.toString();
     }
 
+    public CorpusAnswer askAcrossDocuments(String question, Collection<String> documentIds) {
+        return askAcrossDocuments(question, documentIds, topK);
+    }
+
+    /**
+     * Keyword answer over several documents (null means every indexed document), listing the best
+     * chunks with their source numbers
+     */
+    public CorpusAnswer askAcrossDocuments(String question, Collection<String> documentIds, int topK) {
+        List<RetrievedChunk> sources = documentIds != null
+                ? searchDocuments(question, documentIds, topK)
+                : searchCorpus(question, topK);
+
+        StringBuilder response = new StringBuilder();
+        if (sources.isEmpty()) {
+            response.append("I couldn't find specific information about your question in the selected documents.");
+        } else {
+            response.append("Based on the documents, here's what I found:\n\n");
+            for (int i = 0; i < sources.size(); i++) {
+                String chunk = sources.get(i).text();
+                response.append("• [").append(i + 1).append("] ").append(chunk, 0, Math.min(300, chunk.length()));
+                if (chunk.length() > 300) response.append("...");
+                response.append("\n\n");
+            }
+        }
+        response.append("\n\n---\n*Note: This is a fallback response. For better AI-powered answers with OpenAI, ");
+        response.append("please set your API key in application.properties.*");
+
+        return new CorpusAnswer(response.toString(), sources);
+    }
+
+    private List<RetrievedChunk> searchDocuments(String question, Collection<String> documentIds, int topK) {
+        // Each document has its own index, so scores are only roughly comparable; good enough to merge
+        List<RetrievedChunk> sources = new ArrayList<>();
+        for (String documentId : documentIds) {
+            Bm25Index index = indexFor(documentId);
+            if (index == null) {
+                continue;
+            }
+            for (Bm25Index.Hit hit : index.search(question, topK)) {
+                sources.add(new RetrievedChunk(-1, documentId, hit.chunk(), index.chunk(hit.chunk()), hit.score()));
+            }
+        }
+        sources.sort(Comparator.comparingDouble(RetrievedChunk::score).reversed());
+        return sources.size() > topK ? new ArrayList<>(sources.subList(0, topK)) : sources;
+    }
+
+    private List<RetrievedChunk> searchCorpus(String question, int topK) {
+        CorpusIndex corpus = corpusIndex();
+        List<RetrievedChunk> sources = new ArrayList<>();
+        for (Bm25Index.Hit hit : corpus.index().search(question, topK)) {
+            int document = corpus.chunks().documentOf(hit.chunk());
+            sources.add(new RetrievedChunk(-1, corpus.chunks().documentIds[document],
+                    hit.chunk() - corpus.chunks().starts[document], corpus.index().chunk(hit.chunk()), hit.score()));
+        }
+        return sources;
+    }
+
+    /**
+     * The corpus index, rebuilt if documents were stored or cleared since it was built
+     */
+    private CorpusIndex corpusIndex() {
+        CorpusIndex current = corpusIndex;
+        if (current != null && current.generation() == corpusGeneration.get()) {
+            return current;
+        }
+        synchronized (this) {
+            long generation = corpusGeneration.get();
+            if (corpusIndex == null || corpusIndex.generation() != generation) {
+                List<String> documentIds = new ArrayList<>();
+                List<ChunkSegment> segments = new ArrayList<>();
+                for (String documentId : storedDocuments) {
+                    try {
+                        ChunkSegment segment = ChunkSegment.open(segmentPath(documentId));
+                        if (!segment.isEmpty()) {
+                            documentIds.add(documentId);
+                            segments.add(segment);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Error loading fallback chunks for document " + documentId, e);
+                    }
+                }
+                CorpusChunks chunks = new CorpusChunks(documentIds, segments);
+                corpusIndex = new CorpusIndex(generation, chunks, Bm25Index.buildMapped(chunks));
+            }
+            return corpusIndex;
+        }
+    }
+
+    /**
+     * The BM25 index of a document, mapping its segment and indexing it on first use; null if the
+     * document was never processed
+     */
+    private Bm25Index indexFor(String documentId) {
+        if (!storedDocuments.contains(documentId)) {
+            return null;
+        }
+        return documentIndexes.get(documentId, id -> {
+            try {
+                return Bm25Index.build(ChunkSegment.open(segmentPath(id)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error loading fallback chunks for document " + id, e);
+            }
+        });
+    }
+
+    private Path segmentPath(String documentId) {
+        // Document ids become file names, so only plain ids are accepted
+        if (!SAFE_DOCUMENT_ID.matcher(documentId).matches()) {
+            throw new IllegalArgumentException("Invalid document id: " + documentId);
+        }
+        return storeDirectory.resolve(documentId + SEGMENT_SUFFIX);
+    }
+
     public void clearDocuments() {
-        documentChunks.clear();
-        documentContents.clear();
+        documentIndexes.invalidateAll();
+        for (String documentId : storedDocuments) {
+            try {
+                Files.deleteIfExists(segmentPath(documentId));
+            } catch (IOException e) {
+                System.err.println("Error deleting fallback chunks for document " + documentId + ": " + e.getMessage());
+            }
+        }
+        storedDocuments.clear();
+        corpusGeneration.incrementAndGet();
+    }
+
+    private record CorpusIndex(long generation, CorpusChunks chunks, Bm25Index index) {}
+
+    /**
+     * The chunks of several documents' segments as one list, in document order
+     */
+    private static final class CorpusChunks extends AbstractList<String> implements RandomAccess {
+        private final String[] documentIds;
+        private final ChunkSegment[] segments;
+        // Index of each document's first chunk in the list; segments are never empty
+        private final int[] starts;
+
+        CorpusChunks(List<String> documentIds, List<ChunkSegment> segments) {
+            this.documentIds = documentIds.toArray(new String[0]);
+            this.segments = segments.toArray(new ChunkSegment[0]);
+            this.starts = new int[segments.size() + 1];
+            for (int i = 0; i < segments.size(); i++) {
+                starts[i + 1] = starts[i] + segments.get(i).size();
+            }
+        }
+
+        int documentOf(int chunk) {
+            int position = Arrays.binarySearch(starts, 0, segments.length, chunk);
+            return position >= 0 ? position : -position - 2;
+        }
+
+        @Override
+        public String get(int chunk) {
+            Objects.checkIndex(chunk, size());
+            int document = documentOf(chunk);
+            return segments[document].get(chunk - starts[document]);
+        }
+
+        @Override
+        public int size() {
+            return starts[segments.length];
+        }
     }
 }
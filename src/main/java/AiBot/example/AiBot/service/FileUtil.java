@@ -1,21 +1,52 @@
 package AiBot.example.AiBot.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 
 import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Component
 public class FileUtil {
 
-    public String saveFile(MultipartFile file, String uploadDir) throws IOException {
+    // Bytes moved per transferFrom call when spooling an upload
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    // Text files are mapped and decoded in windows of this size
+    private static final long MAP_WINDOW = 16L * 1024 * 1024;
+
+    @Autowired
+    private PdfTextExtractor pdfTextExtractor;
+
+    /**
+     * A saved upload: where it is stored, its size, and the SHA-256 of its bytes (hex)
+     */
+    public record StoredFile(String path, long size, String sha256) {}
+
+    /**
+     * Spool an upload to its final location in one pass, hashing it on the way
+     */
+    public StoredFile saveFile(MultipartFile file, String uploadDir) throws IOException {
+        Path filePath = null;
         try {
             Path uploadPath = Paths.get(uploadDir);
             if (!Files.exists(uploadPath)) {
@@ -27,17 +58,30 @@ public class FileUtil {
                 fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
             }
             String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
-            Path filePath = uploadPath.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), filePath);
-            return filePath.toString();
+            filePath = uploadPath.resolve(uniqueFilename);
+
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long size = 0;
+            try (ReadableByteChannel in = Channels.newChannel(new DigestInputStream(file.getInputStream(), sha256));
+                 FileChannel out = FileChannel.open(filePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = out.transferFrom(in, size, TRANSFER_CHUNK)) > 0) {
+                    size += transferred;
+                }
+            }
+            return new StoredFile(filePath.toString(), size, HexFormat.of().formatHex(sha256.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         } catch (Exception e) {
+            if (filePath != null) {
+                Files.deleteIfExists(filePath);
+            }
             throw new IOException("Failed to save file: " + e.getMessage(), e);
         }
     }
 
     public String readTextFile(String filePath) throws IOException {
-        Path path = Paths.get(filePath);
-        return Files.readString(path, StandardCharsets.UTF_8);
+        return readMapped(Paths.get(filePath));
     }
 
     public boolean isTextFile(String filename) {
@@ -56,29 +100,76 @@ public class FileUtil {
         return filename.toLowerCase().endsWith(".pdf");
     }
 
-    public String extractTextContent(MultipartFile file) throws IOException {
-        if (file.isEmpty()) {
-            throw new IOException("File is empty");
+    /**
+     * Extract text from a file that has already been saved to local storage
+     */
+    public String extractTextContent(String filePath, String originalFilename) throws IOException {
+        StringBuilder text = new StringBuilder();
+        extractTextContent(filePath, originalFilename, text::append);
+        return text.toString();
+    }
+
+    /**
+     * Extract text from a saved file, passing it to onText in order as it is extracted: page by
+     * page for PDFs, in one piece for other files
+     */
+    public void extractTextContent(String filePath, String originalFilename, Consumer<String> onText) throws IOException {
+        Path path = Paths.get(filePath);
+        if (isPdfFile(originalFilename)) {
+            try {
+                pdfTextExtractor.extractPages(path, onText);
+                return;
+            } catch (Exception e) {
+                throw new IOException("Failed to extract text from PDF: " + e.getMessage(), e);
+            }
         }
+        // Non-text types are read as text too, so decode leniently
+        onText.accept(readMapped(path));
+    }
 
-        String filename = file.getOriginalFilename();
-        
-        if (isPdfFile(filename)) {
-            return extractTextFromPdf(file);
-        } else if (isTextFile(filename)) {
-            return new String(file.getBytes(), StandardCharsets.UTF_8);
-        } else {
-            // Try to read as text anyway
-            return new String(file.getBytes(), StandardCharsets.UTF_8);
+    public void deleteFile(String filePath) {
+        try {
+            Files.deleteIfExists(Paths.get(filePath));
+        } catch (IOException e) {
+            System.err.println("Failed to delete file " + filePath + ": " + e.getMessage());
         }
     }
 
-    private String extractTextFromPdf(MultipartFile file) throws IOException {
-        try (PDDocument document = PDDocument.load(file.getInputStream())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
-        } catch (Exception e) {
-            throw new IOException("Failed to extract text from PDF: " + e.getMessage(), e);
+    /**
+     * Decode a file as UTF-8 straight from memory-mapped windows, replacing malformed input
+     */
+    private static String readMapped(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            StringBuilder text = new StringBuilder((int) Math.min(size, Integer.MAX_VALUE - 8));
+            CharBuffer chars = CharBuffer.allocate(64 * 1024);
+
+            long position = 0;
+            do {
+                long length = Math.min(MAP_WINDOW, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                CoderResult result;
+                do {
+                    result = decoder.decode(window, chars, last);
+                    if (result.isOverflow()) {
+                        text.append(chars.flip());
+                        chars.clear();
+                    }
+                } while (result.isOverflow());
+                // A multi-byte character cut by the window end is mapped again with the next window
+                position += window.position();
+            } while (position < size);
+
+            while (decoder.flush(chars).isOverflow()) {
+                text.append(chars.flip());
+                chars.clear();
+            }
+            text.append(chars.flip());
+            return text.toString();
         }
     }
 }
@@ -0,0 +1,1019 @@
+package AiBot.example.AiBot.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded HNSW (hierarchical navigable small world) graph over chunk embeddings.
+ *
+ * Vectors are L2-normalized, so cosine similarity is a dot product, and live off-heap in
+ * fixed-size memory-mapped segment files. Chunk text is appended to chunks.dat and only read
+ * back for results. The graph, node metadata and tombstones are on the heap and snapshotted to
+ * index.bin by {@link #flush()}. Document replaces and deletes since the last snapshot are
+ * appended to changes.log and replayed on open, so reopening the directory restores everything
+ * without re-embedding and a change costs I/O for that document only.
+ *
+ * Inserts run concurrently: each neighbor list is an immutable array swapped under a striped
+ * lock, so searches never lock. Deleted nodes stay in the graph as tombstones (they still route
+ * searches) and are never returned.
+ */
+class HnswIndex implements Closeable {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int FORMAT_VERSION = 3;
+    private static final int LOG_MAGIC = 0x484E534C; // "HNSL"
+    private static final int LOG_HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final byte LOG_REPLACE = 1;
+    private static final byte LOG_DELETE = 2;
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int LOCK_STRIPES = 256;
+
+    // Filtered searches over at most this many nodes are answered by an exact scan
+    private static final int EXACT_SCAN_LIMIT = 4096;
+
+    private final Path directory;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final int segmentVectors;
+
+    private volatile int dimensions;
+    private volatile FloatBuffer[] segments = new FloatBuffer[0];
+    private volatile MappedByteBuffer[] mappings = new MappedByteBuffer[0];
+    private volatile Node[][] pages = new Node[0][];
+    private final AtomicInteger size = new AtomicInteger();
+    private final Object growLock = new Object();
+
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+    private final Object entryLock = new Object();
+
+    private final Object[] linkLocks = new Object[LOCK_STRIPES];
+    private final Map<String, Queue<Integer>> documentNodes = new ConcurrentHashMap<>();
+    private final AtomicInteger tombstones = new AtomicInteger();
+
+    // A live node per chunk hash (SHA-256 of the text), so identical chunks can reuse its vector
+    private final Map<String, Integer> hashNodes = new ConcurrentHashMap<>();
+
+    // Inserts and deletes share the read side; a snapshot takes the write side for a consistent view
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+    private final FileChannel textChannel;
+    private long textEnd;
+    private final Object textLock = new Object();
+
+    // Changes since the snapshot; a log only belongs to the snapshot with the same generation
+    private final FileChannel logChannel;
+    private long logGeneration;
+    private long logEnd;
+    private final Object logLock = new Object();
+
+    record Result(int node, String documentId, int chunkIndex, float score) {}
+
+    private static final class Node {
+        final String documentId;
+        volatile int chunkIndex;
+        final String chunkHash;
+        final long textOffset;
+        final int textLength;
+        final AtomicReferenceArray<int[]> neighbors;
+        volatile boolean deleted;
+
+        Node(String documentId, int chunkIndex, String chunkHash, long textOffset, int textLength, int level) {
+            this.documentId = documentId;
+            this.chunkIndex = chunkIndex;
+            this.chunkHash = chunkHash;
+            this.textOffset = textOffset;
+            this.textLength = textLength;
+            this.neighbors = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                neighbors.set(l, new int[0]);
+            }
+        }
+
+        int level() {
+            return neighbors.length() - 1;
+        }
+    }
+
+    private record Candidate(int node, float score) {}
+
+    private HnswIndex(Path directory, int m, int efConstruction, int segmentVectors) throws IOException {
+        this.directory = directory;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.segmentVectors = segmentVectors;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            linkLocks[i] = new Object();
+        }
+        Files.createDirectories(directory);
+        this.textChannel = FileChannel.open(directory.resolve("chunks.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.logChannel = FileChannel.open(directory.resolve("changes.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Open the index stored in a directory, or start an empty one there, and apply the changes
+     * logged since its last snapshot. The segment size of an existing index wins over the one
+     * passed in.
+     */
+    static HnswIndex open(Path directory, int m, int efConstruction, int segmentVectors) throws IOException {
+        recoverCompaction(directory);
+        Path snapshot = directory.resolve("index.bin");
+        HnswIndex index;
+        if (!Files.exists(snapshot)) {
+            index = new HnswIndex(directory, m, efConstruction, segmentVectors);
+        } else {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+                int version = in.readInt() == MAGIC ? in.readInt() : -1;
+                if (version != FORMAT_VERSION) {
+                    throw new IOException("Unsupported vector index format " + version + " in " + snapshot);
+                }
+                index = new HnswIndex(directory, in.readInt(), efConstruction, in.readInt());
+                index.load(in);
+            }
+        }
+        index.replayLog();
+        return index;
+    }
+
+    private void load(DataInputStream in) throws IOException {
+        int dims = in.readInt();
+        int count = in.readInt();
+        int entry = in.readInt();
+        int top = in.readInt();
+        textEnd = in.readLong();
+        logGeneration = in.readLong();
+
+        if (dims > 0) {
+            dimensions = dims;
+            ensureCapacity(count);
+        }
+        for (int id = 0; id < count; id++) {
+            String documentId = in.readUTF();
+            int chunkIndex = in.readInt();
+            String chunkHash = in.readUTF();
+            Node node = new Node(documentId, chunkIndex, chunkHash,
+                    in.readLong(), in.readInt(), in.readInt());
+            node.deleted = in.readBoolean();
+            for (int l = 0; l <= node.level(); l++) {
+                int[] links = new int[in.readInt()];
+                for (int i = 0; i < links.length; i++) {
+                    links[i] = in.readInt();
+                }
+                node.neighbors.set(l, links);
+            }
+            pages[id >> PAGE_SHIFT][id & (PAGE_SIZE - 1)] = node;
+            if (node.deleted) {
+                tombstones.incrementAndGet();
+            } else {
+                documentNodes.computeIfAbsent(node.documentId, d -> new ConcurrentLinkedQueue<>()).add(id);
+                hashNodes.put(node.chunkHash, id);
+            }
+        }
+        size.set(count);
+        entryPoint = entry;
+        maxLevel = top;
+    }
+
+    /**
+     * Insert a chunk and link it into the graph; returns its node id. chunkHash is the hash of text.
+     */
+    int add(String documentId, int chunkIndex, String text, String chunkHash, float[] vector) throws IOException {
+        structureLock.readLock().lock();
+        try {
+            float[] normalized = normalize(vector);
+            ensureDimensions(normalized.length);
+
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            long offset = appendText(bytes);
+            int level = randomLevel();
+
+            int id = size.getAndIncrement();
+            ensureCapacity(id + 1);
+            writeVector(id, normalized);
+            Node node = new Node(documentId, chunkIndex, chunkHash, offset, bytes.length, level);
+            pages[id >> PAGE_SHIFT][id & (PAGE_SIZE - 1)] = node;
+
+            link(id, node, normalized, level);
+            documentNodes.computeIfAbsent(documentId, d -> new ConcurrentLinkedQueue<>()).add(id);
+            hashNodes.put(chunkHash, id);
+            return id;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstone every chunk of a document; returns how many were removed
+     */
+    int deleteDocument(String documentId) throws IOException {
+        structureLock.readLock().lock();
+        try {
+            int removed = applyDelete(documentId);
+            if (removed > 0) {
+                appendLog(deleteRecord(documentId));
+            }
+            return removed;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    private int applyDelete(String documentId) {
+        Queue<Integer> ids = documentNodes.remove(documentId);
+        if (ids == null) {
+            return 0;
+        }
+        for (int id : ids) {
+            tombstone(id);
+        }
+        return ids.size();
+    }
+
+    /**
+     * Make a document's chunks match texts. Chunks whose text is already stored keep their node
+     * and vector (only their position changes), new chunks are inserted and the rest are
+     * tombstoned. hashes holds the hash of each text; vectors may hold null for the kept chunks.
+     * Not safe to run concurrently for the same document.
+     */
+    ChunkChanges replaceDocument(String documentId, List<String> texts, List<String> hashes,
+                                 List<float[]> vectors) throws IOException {
+        structureLock.readLock().lock();
+        try {
+            ChunkChanges changes = applyReplace(documentId, texts, hashes, vectors);
+            // Logged even if only positions changed
+            appendLog(replaceRecord(documentId, texts, vectors));
+            return changes;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    private ChunkChanges applyReplace(String documentId, List<String> texts, List<String> hashes,
+                                      List<float[]> vectors) throws IOException {
+        Queue<Integer> current = documentNodes.getOrDefault(documentId, new ConcurrentLinkedQueue<>());
+        Map<String, Deque<Integer>> storedByHash = new HashMap<>();
+        for (int id : current) {
+            storedByHash.computeIfAbsent(node(id).chunkHash, h -> new ArrayDeque<>()).add(id);
+        }
+
+        // Match every chunk and check the new ones have vectors before changing anything
+        Integer[] kept = new Integer[texts.size()];
+        for (int i = 0; i < texts.size(); i++) {
+            Deque<Integer> matches = storedByHash.get(hashes.get(i));
+            kept[i] = matches != null ? matches.poll() : null;
+            if (kept[i] == null && vectors.get(i) == null) {
+                throw new IllegalStateException("No embedding for new chunk " + i + " of document " + documentId);
+            }
+        }
+
+        int added = 0;
+        int unchanged = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            if (kept[i] != null) {
+                node(kept[i]).chunkIndex = i;
+                unchanged++;
+            } else {
+                add(documentId, i, texts.get(i), hashes.get(i), vectors.get(i));
+                added++;
+            }
+        }
+
+        List<Integer> removed = new ArrayList<>();
+        for (Deque<Integer> leftovers : storedByHash.values()) {
+            removed.addAll(leftovers);
+        }
+        Queue<Integer> ids = documentNodes.get(documentId);
+        for (int id : removed) {
+            tombstone(id);
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+        return new ChunkChanges(added, removed.size(), unchanged);
+    }
+
+    /**
+     * Text hashes of a document's live chunks
+     */
+    Set<String> chunkHashes(String documentId) {
+        Set<String> hashes = new HashSet<>();
+        Queue<Integer> ids = documentNodes.get(documentId);
+        if (ids != null) {
+            for (int id : ids) {
+                hashes.add(node(id).chunkHash);
+            }
+        }
+        return hashes;
+    }
+
+    private void tombstone(int id) {
+        Node node = node(id);
+        node.deleted = true;
+        hashNodes.remove(node.chunkHash, id);
+        tombstones.incrementAndGet();
+    }
+
+    /**
+     * The k live chunks most similar to the query, best first. A non-null documentIds restricts
+     * results to those documents.
+     */
+    List<Result> search(float[] query, int k, int efSearch, Collection<String> documentIds) {
+        if (size.get() == 0 || entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] q = normalize(query);
+        if (q.length != dimensions) {
+            throw new IllegalArgumentException("Query has " + q.length + " dimensions, index has " + dimensions);
+        }
+
+        Set<String> filter = documentIds != null ? new HashSet<>(documentIds) : null;
+        if (filter != null) {
+            int candidates = 0;
+            for (String documentId : filter) {
+                Queue<Integer> ids = documentNodes.get(documentId);
+                candidates += ids != null ? ids.size() : 0;
+            }
+            if (candidates == 0) {
+                return List.of();
+            }
+            // A small partition is cheaper (and exact) to scan than to find through the graph
+            if (candidates <= EXACT_SCAN_LIMIT) {
+                return exactScan(q, k, filter);
+            }
+        }
+
+        // Widen the beam until enough results survive tombstones and the document filter
+        int ef = Math.max(efSearch, k);
+        while (true) {
+            List<Result> results = graphSearch(q, k, ef, filter);
+            if (results.size() >= k || ef >= size.get()) {
+                return results;
+            }
+            ef *= 4;
+        }
+    }
+
+    private List<Result> graphSearch(float[] q, int k, int ef, Set<String> filter) {
+        int current = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            current = greedyClosest(q, current, level);
+        }
+
+        List<Result> results = new ArrayList<>(k);
+        for (Candidate candidate : searchLayer(q, current, ef, 0)) {
+            Node node = node(candidate.node);
+            if (!node.deleted && (filter == null || filter.contains(node.documentId))) {
+                results.add(new Result(candidate.node, node.documentId, node.chunkIndex, candidate.score));
+                if (results.size() == k) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<Result> exactScan(float[] q, int k, Set<String> filter) {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+        for (String documentId : filter) {
+            Queue<Integer> ids = documentNodes.get(documentId);
+            if (ids == null) {
+                continue;
+            }
+            for (int id : ids) {
+                if (node(id).deleted) {
+                    continue;
+                }
+                float score = dot(q, id);
+                if (best.size() < k) {
+                    best.add(new Candidate(id, score));
+                } else if (score > best.peek().score) {
+                    best.poll();
+                    best.add(new Candidate(id, score));
+                }
+            }
+        }
+
+        List<Result> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Candidate candidate = best.poll();
+            Node node = node(candidate.node);
+            results.add(new Result(candidate.node, node.documentId, node.chunkIndex, candidate.score));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    /**
+     * Chunk text of a node, read back from chunks.dat
+     */
+    String text(int id) throws IOException {
+        Node node = node(id);
+        ByteBuffer buffer = ByteBuffer.allocate(node.textLength);
+        long position = node.textOffset;
+        while (buffer.hasRemaining()) {
+            int read = textChannel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("chunks.dat is shorter than the index expects");
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The stored (normalized) vector of a live chunk with this text hash, or null
+     */
+    float[] vectorForChunk(String chunkHash) {
+        Integer id = hashNodes.get(chunkHash);
+        if (id == null || node(id).deleted) {
+            return null;
+        }
+        return vector(id);
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int liveSize() {
+        return size.get() - tombstones.get();
+    }
+
+    /**
+     * Bytes of changes logged since the last snapshot
+     */
+    long logBytes() {
+        synchronized (logLock) {
+            return Math.max(0, logEnd - LOG_HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Persist vectors, text and a snapshot of the graph, and start an empty change log. Inserts
+     * wait while the snapshot is written; its cost grows with the whole index, so it is meant to
+     * run now and then, not after every change.
+     */
+    void flush() throws IOException {
+        structureLock.writeLock().lock();
+        try {
+            for (MappedByteBuffer mapping : mappings) {
+                mapping.force();
+            }
+            textChannel.force(false);
+
+            Path snapshot = directory.resolve("index.bin");
+            Path temp = directory.resolve("index.bin.tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                int count = size.get();
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(m);
+                out.writeInt(segmentVectors);
+                out.writeInt(dimensions);
+                out.writeInt(count);
+                out.writeInt(entryPoint);
+                out.writeInt(maxLevel);
+                out.writeLong(textEnd);
+                // The current log is already in this snapshot; a crash before it is reset must not replay it
+                out.writeLong(logGeneration + 1);
+
+                for (int id = 0; id < count; id++) {
+                    Node node = node(id);
+                    out.writeUTF(node.documentId);
+                    out.writeInt(node.chunkIndex);
+                    out.writeUTF(node.chunkHash);
+                    out.writeLong(node.textOffset);
+                    out.writeInt(node.textLength);
+                    out.writeInt(node.level());
+                    out.writeBoolean(node.deleted);
+                    for (int l = 0; l <= node.level(); l++) {
+                        int[] links = node.neighbors.get(l);
+                        out.writeInt(links.length);
+                        for (int link : links) {
+                            out.writeInt(link);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logGeneration++;
+            resetLog();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild the index without its tombstones into a sibling directory and swap it in. This
+     * index is closed; use the returned one. Only for an index nobody else is using yet.
+     */
+    HnswIndex compact() throws IOException {
+        Path rebuilt = sibling(directory, ".compact");
+        deleteRecursively(rebuilt);
+        try (HnswIndex compacted = new HnswIndex(rebuilt, m, efConstruction, segmentVectors)) {
+            int count = size.get();
+            for (int id = 0; id < count; id++) {
+                Node node = node(id);
+                if (!node.deleted) {
+                    compacted.add(node.documentId, node.chunkIndex, text(id), node.chunkHash, vector(id));
+                }
+            }
+            compacted.flush();
+        }
+        close();
+
+        // Interrupted between the two moves, open() puts the old directory back
+        Path previous = sibling(directory, ".old");
+        Files.move(directory, previous, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(rebuilt, directory, StandardCopyOption.ATOMIC_MOVE);
+        deleteRecursively(previous);
+        return open(directory, m, efConstruction, segmentVectors);
+    }
+
+    @Override
+    public void close() throws IOException {
+        textChannel.close();
+        logChannel.close();
+    }
+
+    // ---- change log ----
+
+    /**
+     * Apply the changes logged since the snapshot, then take a new snapshot. A torn record at
+     * the end (a crash mid-write) and everything after it is dropped.
+     */
+    private void replayLog() throws IOException {
+        int replayed = 0;
+        long logSize = logChannel.size();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve("changes.log"))))) {
+            if (logSize >= LOG_HEADER_BYTES && in.readInt() == LOG_MAGIC && in.readLong() == logGeneration) {
+                byte[] record;
+                while ((record = readRecord(in, logSize)) != null) {
+                    applyRecord(record);
+                    replayed++;
+                }
+            }
+        }
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " vector index changes from " + directory.resolve("changes.log"));
+            flush();
+        } else {
+            resetLog();
+        }
+    }
+
+    private static byte[] readRecord(DataInputStream in, long logSize) throws IOException {
+        try {
+            int length = in.readInt();
+            long checksum = in.readInt() & 0xFFFFFFFFL;
+            if (length <= 0 || length > logSize) {
+                return null;
+            }
+            byte[] record = in.readNBytes(length);
+            if (record.length < length || checksum(record) != checksum) {
+                return null;
+            }
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private void applyRecord(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        String documentId = in.readUTF();
+        if (type == LOG_DELETE) {
+            applyDelete(documentId);
+            return;
+        }
+        int count = in.readInt();
+        List<String> texts = new ArrayList<>(count);
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            texts.add(new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+            float[] vector = null;
+            if (in.readBoolean()) {
+                vector = new float[in.readInt()];
+                for (int d = 0; d < vector.length; d++) {
+                    vector[d] = in.readFloat();
+                }
+            }
+            vectors.add(vector);
+        }
+        // Hashes aren't logged; replay is rare enough to recompute them
+        applyReplace(documentId, texts, EmbeddingCache.hashAll(texts), vectors);
+    }
+
+    private static byte[] deleteRecord(String documentId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LOG_DELETE);
+        out.writeUTF(documentId);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] replaceRecord(String documentId, List<String> texts, List<float[]> vectors) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LOG_REPLACE);
+        out.writeUTF(documentId);
+        out.writeInt(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            byte[] text = texts.get(i).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            float[] vector = vectors.get(i);
+            out.writeBoolean(vector != null);
+            if (vector != null) {
+                out.writeInt(vector.length);
+                for (float v : vector) {
+                    out.writeFloat(v);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Append a record (length, CRC32, payload) and force it to disk
+     */
+    private void appendLog(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + record.length);
+        buffer.putInt(record.length).putInt((int) checksum(record)).put(record).flip();
+        synchronized (logLock) {
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer, logEnd + buffer.position());
+            }
+            logChannel.force(false);
+            logEnd += buffer.limit();
+        }
+    }
+
+    private void resetLog() throws IOException {
+        synchronized (logLock) {
+            logChannel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES).putInt(LOG_MAGIC).putLong(logGeneration).flip();
+            while (header.hasRemaining()) {
+                logChannel.write(header, header.position());
+            }
+            logChannel.force(true);
+            logEnd = LOG_HEADER_BYTES;
+        }
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    // ---- compaction ----
+
+    /**
+     * Finish or undo a compaction that was interrupted while swapping directories
+     */
+    private static void recoverCompaction(Path directory) throws IOException {
+        Path previous = sibling(directory, ".old");
+        if (Files.exists(previous)) {
+            if (Files.exists(directory.resolve("index.bin"))) {
+                deleteRecursively(previous);
+            } else {
+                deleteRecursively(directory);
+                Files.move(previous, directory, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        deleteRecursively(sibling(directory, ".compact"));
+    }
+
+    private static Path sibling(Path directory, String suffix) {
+        return directory.resolveSibling(directory.getFileName() + suffix);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path file : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // ---- graph construction ----
+
+    private void link(int id, Node node, float[] vector, int level) {
+        int entry;
+        int top;
+        synchronized (entryLock) {
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return;
+            }
+            entry = entryPoint;
+            top = maxLevel;
+        }
+
+        int current = entry;
+        for (int l = top; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+
+        for (int l = Math.min(level, top); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+            int[] selected = selectNeighbors(candidates, m);
+            node.neighbors.set(l, selected);
+            for (int neighbor : selected) {
+                addLink(neighbor, id, l);
+            }
+            current = candidates.get(0).node;
+        }
+
+        if (level > top) {
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    maxLevel = level;
+                    entryPoint = id;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a back link to an existing node, pruning its list with the selection heuristic when full
+     */
+    private void addLink(int target, int id, int level) {
+        int maxLinks = level == 0 ? maxM0 : m;
+        Node node = node(target);
+        synchronized (linkLocks[target % LOCK_STRIPES]) {
+            int[] links = node.neighbors.get(level);
+            if (links.length < maxLinks) {
+                int[] grown = Arrays.copyOf(links, links.length + 1);
+                grown[links.length] = id;
+                node.neighbors.set(level, grown);
+                return;
+            }
+
+            List<Candidate> candidates = new ArrayList<>(links.length + 1);
+            candidates.add(new Candidate(id, dot(target, id)));
+            for (int link : links) {
+                candidates.add(new Candidate(link, dot(target, link)));
+            }
+            candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+            node.neighbors.set(level, selectNeighbors(candidates, maxLinks));
+        }
+    }
+
+    /**
+     * HNSW neighbor selection heuristic: keep a candidate only if it is closer to the base than to
+     * any already selected neighbor, which spreads links across clusters. Remaining slots are
+     * filled with the closest pruned candidates. Candidates must be sorted best first.
+     */
+    private int[] selectNeighbors(List<Candidate> candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        int count = 0;
+        List<Candidate> pruned = new ArrayList<>();
+
+        for (Candidate candidate : candidates) {
+            if (count == selected.length) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                if (dot(candidate.node, selected[i]) > candidate.score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node;
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && count < selected.length; i++) {
+            selected[count++] = pruned.get(i).node;
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private int randomLevel() {
+        double r = 1 - ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(r) * levelMultiplier);
+    }
+
+    // ---- graph search ----
+
+    private int greedyClosest(float[] q, int start, int level) {
+        int current = start;
+        float best = dot(q, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : node(current).neighbors.get(level)) {
+                float score = dot(q, neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer; returns up to ef nodes, best first
+     */
+    private List<Candidate> searchLayer(float[] q, int entry, int ef, int level) {
+        BitSet visited = new BitSet(size.get());
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+
+        Candidate start = new Candidate(entry, dot(q, entry));
+        visited.set(entry);
+        frontier.add(start);
+        results.add(start);
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (results.size() >= ef && closest.score < results.peek().score) {
+                break;
+            }
+            for (int neighbor : node(closest.node).neighbors.get(level)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = dot(q, neighbor);
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate candidate = new Candidate(neighbor, score);
+                    frontier.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        return ordered;
+    }
+
+    // ---- storage ----
+
+    private Node node(int id) {
+        return pages[id >> PAGE_SHIFT][id & (PAGE_SIZE - 1)];
+    }
+
+    private void ensureDimensions(int dims) {
+        if (dimensions == dims) {
+            return;
+        }
+        synchronized (growLock) {
+            if (dimensions == 0) {
+                dimensions = dims;
+            } else if (dimensions != dims) {
+                throw new IllegalArgumentException("Embedding has " + dims + " dimensions, index has " + dimensions);
+            }
+        }
+    }
+
+    /**
+     * Grow node pages and mapped vector segments so ids below count are addressable
+     */
+    private void ensureCapacity(int count) throws IOException {
+        if (pages.length * PAGE_SIZE >= count && (long) segments.length * segmentVectors >= count) {
+            return;
+        }
+        synchronized (growLock) {
+            int pageCount = (count + PAGE_SIZE - 1) >> PAGE_SHIFT;
+            if (pages.length < pageCount) {
+                Node[][] grown = Arrays.copyOf(pages, pageCount);
+                for (int p = pages.length; p < pageCount; p++) {
+                    grown[p] = new Node[PAGE_SIZE];
+                }
+                pages = grown;
+            }
+
+            int segmentCount = (count + segmentVectors - 1) / segmentVectors;
+            if (segments.length < segmentCount) {
+                FloatBuffer[] grownSegments = Arrays.copyOf(segments, segmentCount);
+                MappedByteBuffer[] grownMappings = Arrays.copyOf(mappings, segmentCount);
+                for (int s = segments.length; s < segmentCount; s++) {
+                    grownMappings[s] = mapSegment(s);
+                    grownSegments[s] = grownMappings[s].asFloatBuffer();
+                }
+                mappings = grownMappings;
+                segments = grownSegments;
+            }
+        }
+    }
+
+    private MappedByteBuffer mapSegment(int segment) throws IOException {
+        Path file = directory.resolve(String.format("vectors-%04d.seg", segment));
+        long bytes = (long) segmentVectors * dimensions * Float.BYTES;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            return mapping;
+        }
+    }
+
+    private float[] vector(int id) {
+        FloatBuffer segment = segments[id / segmentVectors];
+        int base = (id % segmentVectors) * dimensions;
+        float[] vector = new float[dimensions];
+        segment.get(base, vector);
+        return vector;
+    }
+
+    private void writeVector(int id, float[] vector) {
+        FloatBuffer segment = segments[id / segmentVectors];
+        int base = (id % segmentVectors) * dimensions;
+        for (int i = 0; i < vector.length; i++) {
+            segment.put(base + i, vector[i]);
+        }
+    }
+
+    private long appendText(byte[] bytes) throws IOException {
+        synchronized (textLock) {
+            long offset = textEnd;
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                textChannel.write(buffer, offset + buffer.position());
+            }
+            textEnd += bytes.length;
+            return offset;
+        }
+    }
+
+    private float dot(float[] q, int id) {
+        FloatBuffer segment = segments[id / segmentVectors];
+        int base = (id % segmentVectors) * dimensions;
+        float sum = 0;
+        for (int i = 0; i < q.length; i++) {
+            sum += q[i] * segment.get(base + i);
+        }
+        return sum;
+    }
+
+    private float dot(int a, int b) {
+        FloatBuffer segmentA = segments[a / segmentVectors];
+        FloatBuffer segmentB = segments[b / segmentVectors];
+        int baseA = (a % segmentVectors) * dimensions;
+        int baseB = (b % segmentVectors) * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += segmentA.get(baseA + i) * segmentB.get(baseB + i);
+        }
+        return sum;
+    }
+
+    static float[] normalize(float[] values) {
+        double norm = 0;
+        for (float v : values) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] normalized = new float[values.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < values.length; i++) {
+            normalized[i] = (float) (values[i] / norm);
+        }
+        return normalized;
+    }
+}
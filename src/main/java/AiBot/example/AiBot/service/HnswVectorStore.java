@@ -0,0 +1,189 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vector store embedded in the application: an {@link HnswIndex} persisted under
+ * vector.embedded.path, for deployments without PostgreSQL/pgvector.
+ *
+ * Retrieval is vector-only; a hybrid request is answered from the similarity ranking alone.
+ * Each change is appended to the index's change log; the whole index is snapshotted in the
+ * background every snapshot-interval-seconds (sooner once the log reaches snapshot-log-bytes)
+ * and on shutdown, so a restart reopens it instead of re-embedding. Deleted chunks are compacted
+ * away on startup once they make up compact-tombstone-ratio of the index.
+ */
+@Component
+@ConditionalOnProperty(name = "vector.store.type", havingValue = "embedded")
+public class HnswVectorStore implements VectorStore {
+
+    @Value("${vector.embedded.path:./data/vectors}")
+    private String path;
+
+    // Links per node (twice as many on the bottom layer); more links raise recall and memory
+    @Value("${vector.embedded.hnsw.m:16}")
+    private int m;
+
+    @Value("${vector.embedded.hnsw.ef-construction:100}")
+    private int efConstruction;
+
+    // Beam width at query time; raised to topK when that is larger
+    @Value("${vector.embedded.hnsw.ef-search:64}")
+    private int efSearch;
+
+    // Vectors per memory-mapped segment file
+    @Value("${vector.embedded.segment-vectors:16384}")
+    private int segmentVectors;
+
+    @Value("${vector.embedded.snapshot-interval-seconds:60}")
+    private long snapshotIntervalSeconds;
+
+    @Value("${vector.embedded.snapshot-log-bytes:67108864}")
+    private long snapshotLogBytes;
+
+    @Value("${vector.embedded.compact-tombstone-ratio:0.3}")
+    private double compactTombstoneRatio;
+
+    private HnswIndex index;
+    private ScheduledExecutorService snapshotter;
+
+    @PostConstruct
+    void open() {
+        Path directory = Paths.get(path).toAbsolutePath().normalize();
+        try {
+            index = HnswIndex.open(directory, m, efConstruction, segmentVectors);
+            int deleted = index.size() - index.liveSize();
+            if (compactTombstoneRatio > 0 && deleted > 0 && deleted >= compactTombstoneRatio * index.size()) {
+                index = index.compact();
+                System.out.println("Compacted embedded vector store: dropped " + deleted + " deleted chunks");
+            }
+            System.out.println("Embedded vector store opened at " + directory + " (" + index.liveSize() + " chunks)");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening embedded vector store at " + directory, e);
+        }
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("vector-store-snapshot").daemon().factory());
+        if (snapshotIntervalSeconds > 0) {
+            snapshotter.scheduleWithFixedDelay(this::snapshot, snapshotIntervalSeconds, snapshotIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+            index.flush();
+            index.close();
+        } catch (IOException e) {
+            System.err.println("Error closing embedded vector store: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Snapshot the index if anything changed since the last snapshot; runs on the snapshot thread
+     */
+    private void snapshot() {
+        if (index.logBytes() == 0) {
+            return;
+        }
+        try {
+            index.flush();
+        } catch (IOException e) {
+            // The change log still has everything; the next run tries again
+            System.err.println("Error snapshotting embedded vector store: " + e.getMessage());
+        }
+    }
+
+    private void snapshotIfLogIsLarge() {
+        if (index.logBytes() >= snapshotLogBytes) {
+            try {
+                snapshotter.execute(this::snapshot);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; close() takes the final snapshot
+            }
+        }
+    }
+
+    @Override
+    public ChunkChanges store(String documentId, List<String> chunks, List<String> chunkHashes, List<Embedding> embeddings) {
+        try {
+            List<float[]> vectors = new ArrayList<>(embeddings.size());
+            for (Embedding embedding : embeddings) {
+                vectors.add(embedding != null ? embedding.values() : null);
+            }
+            ChunkChanges changes = index.replaceDocument(documentId, chunks, chunkHashes, vectors);
+            snapshotIfLogIsLarge();
+            return changes;
+        } catch (IOException e) {
+            throw new RuntimeException("Error storing in vector database: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Set<String> chunkHashes(String documentId) {
+        return index.chunkHashes(documentId);
+    }
+
+    @Override
+    public Map<String, Embedding> findEmbeddings(Collection<String> chunkHashes) {
+        Map<String, Embedding> found = new HashMap<>();
+        for (String chunkHash : chunkHashes) {
+            float[] vector = index.vectorForChunk(chunkHash);
+            if (vector != null) {
+                found.put(chunkHash, new Embedding(vector));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void deleteDocument(String documentId) {
+        try {
+            if (index.deleteDocument(documentId) > 0) {
+                snapshotIfLogIsLarge();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error clearing document: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<RetrievedChunk> search(Embedding questionEmbedding, String question, Collection<String> documentIds,
+                                       RetrievalOptions options) {
+        try {
+            List<HnswIndex.Result> results = index.search(questionEmbedding.values(), options.topK(), efSearch, documentIds);
+            List<RetrievedChunk> chunks = new ArrayList<>(results.size());
+            for (HnswIndex.Result result : results) {
+                chunks.add(new RetrievedChunk(result.node(), result.documentId(), result.chunkIndex(),
+                        index.text(result.node()), result.score()));
+            }
+            return chunks;
+        } catch (IOException e) {
+            throw new RuntimeException("Error finding similar chunks: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package AiBot.example.AiBot.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails a read that gets no data for the idle timeout, by closing the stream underneath it
+ * (which unblocks the JDK HTTP client's body stream). Used for event streams, whose total
+ * length can't be bounded up front.
+ */
+class IdleTimeoutInputStream extends FilterInputStream {
+
+    private final long idleTimeoutMs;
+    private final ScheduledExecutorService watchdog;
+    private volatile boolean timedOut;
+
+    IdleTimeoutInputStream(InputStream in, long idleTimeoutMs, ScheduledExecutorService watchdog) {
+        super(in);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.watchdog = watchdog;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ScheduledFuture<?> timer = arm();
+        try {
+            return super.read();
+        } catch (IOException e) {
+            throw timedOut ? timeout() : e;
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ScheduledFuture<?> timer = arm();
+        try {
+            return super.read(b, off, len);
+        } catch (IOException e) {
+            throw timedOut ? timeout() : e;
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    private ScheduledFuture<?> arm() {
+        return watchdog.schedule(() -> {
+            timedOut = true;
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // Closing is only used to wake the reader up
+            }
+        }, idleTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private HttpTimeoutException timeout() {
+        return new HttpTimeoutException("no data received for " + idleTimeoutMs + " ms");
+    }
+}
@@ -0,0 +1,11 @@
+package AiBot.example.AiBot.service;
+
+/**
+ * Thrown when the ingestion queue is at capacity and a new upload can't be accepted.
+ */
+public class IngestionQueueFullException extends RuntimeException {
+
+    public IngestionQueueFullException(String message) {
+        super(message);
+    }
+}
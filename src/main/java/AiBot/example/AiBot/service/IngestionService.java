@@ -0,0 +1,269 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Document;
+import AiBot.example.AiBot.model.DocumentContent;
+import AiBot.example.AiBot.model.Embedding;
+import AiBot.example.AiBot.model.IngestionJob;
+import AiBot.example.AiBot.repository.DocumentContentRepository;
+import AiBot.example.AiBot.repository.DocumentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs uploaded documents through extract → chunk → embed → store on a bounded worker pool,
+ * publishing progress to /topic/documents/{id}/status. Once a document is ready its summary is
+ * handed to {@link SummaryService}, so questions don't wait for it.
+ */
+@Service
+public class IngestionService {
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentContentRepository documentContentRepository;
+
+    @Autowired
+    private FileUtil fileUtil;
+
+    @Autowired
+    private SummaryService summaryService;
+
+    @Autowired(required = false)
+    private VectorRagService vectorRagService;
+
+    @Autowired(required = false)
+    private FallbackRagService fallbackRagService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.workers:2}")
+    private int workers;
+
+    @Value("${ingestion.queue-capacity:20}")
+    private int queueCapacity;
+
+    // Finished jobs are kept this long for the status endpoint, then the Document row is the source of truth
+    @Value("${ingestion.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private ThreadPoolExecutor executor;
+    private final Map<Long, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ingest-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("ingestion.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("ingestion.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * What to do when a queued version of a document finishes; both run on the worker
+     */
+    public interface Completion {
+
+        Completion NONE = new Completion() {
+            @Override
+            public void ready() {
+            }
+
+            @Override
+            public boolean failed() {
+                return false;
+            }
+        };
+
+        /**
+         * Called once the new version is READY
+         */
+        void ready();
+
+        /**
+         * Called when the new version failed, while the document is still claimed by the job.
+         * Return true after reverting the document to a version that should be ingested instead.
+         */
+        boolean failed();
+    }
+
+    /**
+     * Queue a saved document for processing. Fails fast when the queue is full.
+     */
+    public IngestionJob submit(Document document) {
+        return submit(document, reserve(document.getId()), Completion.NONE);
+    }
+
+    /**
+     * Claim a document for processing. Atomic per document: fails while it is still being
+     * processed. The claim ends when the job finishes, or with {@link #release} if it is never
+     * submitted.
+     */
+    public IngestionJob reserve(Long documentId) {
+        return jobs.compute(documentId, (id, existing) -> {
+            if (existing != null && !existing.isFinished()) {
+                throw new IllegalStateException("Document is still being processed, retry when it is done");
+            }
+            return new IngestionJob(id);
+        });
+    }
+
+    public void release(IngestionJob job) {
+        jobs.remove(job.getDocumentId(), job);
+    }
+
+    /**
+     * Queue a reserved job. Fails fast (and releases the claim) when the queue is full.
+     */
+    public IngestionJob submit(Document document, IngestionJob job, Completion completion) {
+        pruneFinishedJobs();
+
+        try {
+            executor.execute(() -> process(job, completion));
+        } catch (RejectedExecutionException e) {
+            release(job);
+            throw new IngestionQueueFullException("Server is busy processing other documents, please retry shortly");
+        }
+        publish(job);
+        return job;
+    }
+
+    public Optional<IngestionJob> getJob(Long documentId) {
+        return Optional.ofNullable(jobs.get(documentId));
+    }
+
+    private void process(IngestionJob job, Completion completion) {
+        Long id = job.getDocumentId();
+        try {
+            Document document = documentRepository.findById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+            String documentId = id.toString();
+
+            advance(job, IngestionJob.EXTRACTING);
+            // PDF pages arrive in order while later pages are still being extracted; chunk them as they come
+            StringBuilder text = new StringBuilder();
+            ParagraphChunkStream chunkStream = vectorRagService != null
+                    ? new ParagraphChunkStream(vectorRagService::chunkDocument)
+                    : null;
+            fileUtil.extractTextContent(document.getFilePath(), document.getFileName(), page -> {
+                text.append(page);
+                if (chunkStream != null) {
+                    chunkStream.accept(page);
+                }
+            });
+            String content = text.toString();
+            documentContentRepository.save(new DocumentContent(id, content));
+            System.out.println("Document " + id + " content extracted, length: " + content.length());
+
+            // Use appropriate RAG service (prefer vector-based RAG with OpenAI)
+            if (vectorRagService != null) {
+                advance(job, IngestionJob.CHUNKING);
+                List<String> chunks = chunkStream.finish();
+                // Hashed once here; embedding and storing both look chunks up by hash
+                List<String> hashes = EmbeddingCache.hashAll(chunks);
+
+                advance(job, IngestionJob.EMBEDDING);
+                List<Embedding> embeddings = vectorRagService.embedNewChunks(documentId, chunks, hashes);
+
+                advance(job, IngestionJob.STORING);
+                ChunkChanges changes = vectorRagService.storeInVectorDatabase(documentId, chunks, hashes, embeddings);
+                System.out.println("Document " + id + " chunks: " + changes.added() + " added, "
+                        + changes.removed() + " removed, " + changes.unchanged() + " unchanged");
+            } else if (fallbackRagService != null) {
+                advance(job, IngestionJob.CHUNKING);
+                fallbackRagService.processDocument(content, documentId);
+            }
+
+            advance(job, IngestionJob.READY);
+            summaryService.submit(id);
+        } catch (Exception e) {
+            System.err.println("Ingestion of document " + id + " failed: " + e.getMessage());
+            if (revertAfterFailure(completion, id)) {
+                // Same job, so the document stays claimed until the restored version is processed
+                job.setError("Update failed, previous version restored: " + e.getMessage());
+                process(job, Completion.NONE);
+                return;
+            }
+            job.setError(e.getMessage());
+            advance(job, IngestionJob.FAILED);
+            return;
+        }
+        try {
+            completion.ready();
+        } catch (Exception e) {
+            System.err.println("Cleanup after ingesting document " + id + " failed: " + e.getMessage());
+        }
+    }
+
+    private static boolean revertAfterFailure(Completion completion, Long id) {
+        try {
+            return completion.failed();
+        } catch (Exception e) {
+            System.err.println("Reverting document " + id + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void advance(IngestionJob job, String status) {
+        job.setStatus(status);
+        // Only the status column: saving the whole entity would write back a stale copy of the rest
+        documentRepository.updateStatus(job.getDocumentId(), status);
+        publish(job);
+    }
+
+    private void publish(IngestionJob job) {
+        try {
+            messagingTemplate.convertAndSend("/topic/documents/" + job.getDocumentId() + "/status", toStatusMap(job));
+        } catch (Exception e) {
+            System.err.println("Failed to publish ingestion progress: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> toStatusMap(IngestionJob job) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("jobId", job.getJobId());
+        status.put("documentId", job.getDocumentId());
+        status.put("status", job.getStatus());
+        status.put("progress", job.getProgress());
+        status.put("updatedAt", job.getUpdatedAt());
+        if (job.getError() != null) {
+            status.put("error", job.getError());
+        }
+        return status;
+    }
+
+    private void pruneFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getUpdatedAt().isBefore(cutoff));
+    }
+}
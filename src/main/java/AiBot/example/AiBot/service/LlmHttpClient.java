@@ -0,0 +1,181 @@
+package AiBot.example.AiBot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Shared HTTP client for every OpenAI call (embeddings and chat).
+ *
+ * One JDK {@link HttpClient} is reused so connections stay pooled and kept alive (and multiplexed
+ * over HTTP/2 where the server supports it). Requests have a connect timeout, accept gzip, and are
+ * timed per endpoint into the "llm.http.requests" histogram. A JSON response must arrive in full
+ * within the response timeout; an event stream must start within it and then fails when no data
+ * arrives for the idle timeout.
+ *
+ * Idle pooled connections are closed by the JDK after -Djdk.httpclient.keepalive.timeout seconds
+ * (default 20 minutes); the start script sets it.
+ */
+@Component
+public class LlmHttpClient {
+
+    @Value("${spring.ai.openai.api-key}")
+    private String openaiApiKey;
+
+    @Value("${openai.base-url:https://api.openai.com}")
+    private String baseUrl;
+
+    @Value("${openai.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    // Time allowed for a whole JSON response, and until the headers of an event stream arrive
+    @Value("${openai.http.response-timeout-ms:60000}")
+    private long responseTimeoutMs;
+
+    // Longest gap between two reads of an event stream
+    @Value("${openai.http.stream-idle-timeout-ms:30000}")
+    private long streamIdleTimeoutMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpClient httpClient;
+    private ScheduledExecutorService watchdog;
+
+    /**
+     * Reads a successful response body; the stream is closed by the caller
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    @PostConstruct
+    void start() {
+        watchdog = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("llm-http-watchdog").daemon().factory());
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @PreDestroy
+    void stop() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * POST a JSON body to an OpenAI endpoint (e.g. "/v1/embeddings") and read the response.
+     * Non-2xx responses are thrown as RuntimeExceptions carrying the start of the error body.
+     */
+    public <T> T postJson(String endpoint, Object requestBody, BodyReader<T> reader) {
+        return post(endpoint, requestBody, "application/json", false, reader);
+    }
+
+    /**
+     * Same as {@link #postJson} but asks for a text/event-stream response, which the reader
+     * consumes incrementally
+     */
+    public <T> T postForEventStream(String endpoint, Object requestBody, BodyReader<T> reader) {
+        return post(endpoint, requestBody, "text/event-stream", true, reader);
+    }
+
+    private <T> T post(String endpoint, Object requestBody, String accept, boolean stream, BodyReader<T> reader) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+                    .timeout(Duration.ofMillis(responseTimeoutMs))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", accept)
+                    .header("Accept-Encoding", "gzip")
+                    .header("Authorization", "Bearer " + openaiApiKey)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(requestBody)))
+                    .build();
+
+            HttpResponse<InputStream> response = stream
+                    ? httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream())
+                    : sendBuffered(request);
+            outcome = String.valueOf(response.statusCode());
+
+            InputStream decoded = decode(response);
+            try (InputStream body = stream ? new IdleTimeoutInputStream(decoded, streamIdleTimeoutMs, watchdog) : decoded) {
+                if (response.statusCode() / 100 != 2) {
+                    String error = new String(body.readNBytes(500), StandardCharsets.UTF_8);
+                    throw new RuntimeException("OpenAI " + endpoint + " returned HTTP " + response.statusCode() + ": " + error);
+                }
+                return reader.read(body);
+            }
+        } catch (IOException e) {
+            // Connection failures often carry no message, so fall back to the exception type
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            throw new UncheckedIOException("OpenAI " + endpoint + " request failed: " + reason, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted calling OpenAI " + endpoint, e);
+        } finally {
+            sample.stop(Timer.builder("llm.http.requests")
+                    .tag("endpoint", endpoint)
+                    .tag("status", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Send and read the whole body, giving up (and aborting the exchange) after the response
+     * timeout; the request's own timeout only covers the wait for headers
+     */
+    private HttpResponse<InputStream> sendBuffered(HttpRequest request) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<InputStream>> exchange = httpClient.sendAsync(request,
+                responseInfo -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                        bytes -> (InputStream) new ByteArrayInputStream(bytes)));
+        try {
+            return exchange.get(responseTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            exchange.cancel(true);
+            throw new HttpTimeoutException("response not complete after " + responseTimeoutMs + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            throw e;
+        }
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzip ? new GZIPInputStream(response.body()) : response.body();
+    }
+}
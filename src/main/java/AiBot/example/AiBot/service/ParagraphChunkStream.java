@@ -0,0 +1,40 @@
+package AiBot.example.AiBot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds text that arrives in pieces (e.g. PDF pages) to a paragraph chunker. Paragraphs are
+ * chunked as soon as the blank line ending them has arrived, so the result matches chunking the
+ * concatenated text in one go.
+ */
+public class ParagraphChunkStream {
+
+    private final Chunker chunker;
+    private final StringBuilder pending = new StringBuilder();
+    private final List<String> chunks = new ArrayList<>();
+
+    public ParagraphChunkStream(Chunker chunker) {
+        this.chunker = chunker;
+    }
+
+    public void accept(String text) {
+        pending.append(text);
+        int end = pending.lastIndexOf("\n\n");
+        if (end >= 0) {
+            chunks.addAll(chunker.chunk(pending.substring(0, end)));
+            pending.delete(0, end + 2);
+        }
+    }
+
+    /**
+     * Chunk whatever is left and return every chunk in order
+     */
+    public List<String> finish() {
+        if (pending.length() > 0) {
+            chunks.addAll(chunker.chunk(pending.toString()));
+            pending.setLength(0);
+        }
+        return chunks;
+    }
+}
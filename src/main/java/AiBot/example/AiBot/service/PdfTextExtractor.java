@@ -0,0 +1,125 @@
+package AiBot.example.AiBot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Extracts PDF text page by page.
+ *
+ * The page count is split into ranges that are stripped in parallel, each on its own PDDocument
+ * (PDFBox documents aren't thread-safe) opened with a mixed memory setting so parsing spills to
+ * temp files instead of the heap. Pages are handed to the caller in order as soon as their range
+ * is done, and only a few ranges run ahead, so the whole text is never held here at once.
+ */
+@Component
+public class PdfTextExtractor {
+
+    @Value("${pdf.extract.pages-per-task:16}")
+    private int pagesPerTask;
+
+    // 0 means one thread per available processor
+    @Value("${pdf.extract.threads:0}")
+    private int threads;
+
+    // Heap each open PDDocument may use before PDFBox switches to a temp file
+    @Value("${pdf.extract.max-main-memory-bytes:16777216}")
+    private long maxMainMemoryBytes;
+
+    private ExecutorService executor;
+    private int parallelism;
+
+    @PostConstruct
+    void start() {
+        parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-extract-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Pass the text of every page to onPage, first page first
+     */
+    public void extractPages(Path file, Consumer<String> onPage) throws IOException {
+        int pageCount;
+        try (PDDocument document = open(file.toFile())) {
+            pageCount = document.getNumberOfPages();
+        }
+
+        // Keep a bounded window of ranges in flight; the head is always the next one to emit
+        Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+        int nextPage = 1;
+        try {
+            while (nextPage <= pageCount || !inFlight.isEmpty()) {
+                while (nextPage <= pageCount && inFlight.size() < parallelism * 2) {
+                    int first = nextPage;
+                    int last = Math.min(pageCount, first + pagesPerTask - 1);
+                    inFlight.add(executor.submit(() -> stripRange(file.toFile(), first, last)));
+                    nextPage = last + 1;
+                }
+                for (String page : inFlight.poll().get()) {
+                    onPage.accept(page);
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted extracting " + file.getFileName(), e);
+        } finally {
+            for (Future<List<String>> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The whole text of a PDF, assembled from its pages
+     */
+    public String extractText(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        extractPages(file, text::append);
+        return text.toString();
+    }
+
+    private List<String> stripRange(File file, int firstPage, int lastPage) throws IOException {
+        try (PDDocument document = open(file)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            List<String> pages = new ArrayList<>(lastPage - firstPage + 1);
+            for (int page = firstPage; page <= lastPage; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                pages.add(stripper.getText(document));
+            }
+            return pages;
+        }
+    }
+
+    private PDDocument open(File file) throws IOException {
+        return PDDocument.load(file, MemoryUsageSetting.setupMixed(maxMainMemoryBytes));
+    }
+}
@@ -0,0 +1,420 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Vector store in PostgreSQL: chunks live in the pgvector document_chunks table.
+ *
+ * In hybrid mode the pgvector similarity query and a PostgreSQL full-text query run concurrently
+ * and their rankings are merged with weighted reciprocal rank fusion, so exact terms (policy
+ * codes, SKUs) that embeddings blur still surface. Each leg has its own latency budget; a leg
+ * that misses it is dropped and the answer is built from the other one.
+ */
+@Component
+@ConditionalOnProperty(name = "vector.store.type", havingValue = "pgvector", matchIfMissing = true)
+public class PgVectorStore implements VectorStore {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private VectorSchemaManager vectorSchemaManager;
+
+    @Value("${vector.store.batch-size:500}")
+    private int insertBatchSize;
+
+    // Damping constant of reciprocal rank fusion; 60 is the value from the original RRF paper
+    @Value("${retrieval.rrf-k:60}")
+    private int rrfK;
+
+    // Each leg ranks this many candidates per requested chunk before fusion
+    @Value("${retrieval.candidates-per-result:4}")
+    private int candidatesPerResult;
+
+    @Value("${retrieval.vector-timeout-ms:2000}")
+    private long vectorTimeoutMs;
+
+    @Value("${retrieval.text-timeout-ms:1000}")
+    private long textTimeoutMs;
+
+    // Text search configuration used for both the generated tsvector column and the query
+    static final String TEXT_SEARCH_CONFIG = "english";
+
+    // Cleared the first time the database rejects the pgvector 0.8 iterative scan settings
+    private volatile boolean iterativeScanSupported = true;
+
+    private final ExecutorService legExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("retrieval-", 0).factory());
+
+    @PreDestroy
+    void stop() {
+        legExecutor.shutdownNow();
+    }
+
+    @Override
+    public ChunkChanges store(String documentId, List<String> chunks, List<String> chunkHashes, List<Embedding> embeddings) {
+        vectorSchemaManager.ensureSchema();
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                // Diff against the stored rows in one transaction: rows whose text is still present are kept
+                // (only their position may change), new texts are inserted, the rest are deleted
+                Map<String, Deque<long[]>> storedByHash = new HashMap<>();
+                List<Long> removed = new ArrayList<>();
+                try (PreparedStatement select = conn.prepareStatement(
+                        "SELECT id, chunk_hash, chunk_index FROM document_chunks WHERE document_id = ? ORDER BY id FOR UPDATE")) {
+                    select.setString(1, documentId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            String hash = rs.getString("chunk_hash");
+                            long[] row = {rs.getLong("id"), rs.getInt("chunk_index")};
+                            if (hash == null) {
+                                removed.add(row[0]);
+                            } else {
+                                storedByHash.computeIfAbsent(hash, h -> new ArrayDeque<>()).add(row);
+                            }
+                        }
+                    }
+                }
+
+                int added = 0;
+                int unchanged = 0;
+                // With reWriteBatchedInserts the driver folds each insert batch into multi-row INSERTs
+                String insertSql = "INSERT INTO document_chunks (document_id, chunk_index, chunk_text, chunk_hash, chunk_embedding) "
+                        + "VALUES (?, ?, ?, ?, ?::vector)";
+                try (PreparedStatement insert = conn.prepareStatement(insertSql);
+                     PreparedStatement move = conn.prepareStatement("UPDATE document_chunks SET chunk_index = ? WHERE id = ?")) {
+                    int moved = 0;
+                    for (int i = 0; i < chunks.size(); i++) {
+                        String hash = chunkHashes.get(i);
+                        Deque<long[]> matches = storedByHash.get(hash);
+                        long[] row = matches != null ? matches.poll() : null;
+                        if (row != null) {
+                            unchanged++;
+                            if (row[1] != i) {
+                                move.setInt(1, i);
+                                move.setLong(2, row[0]);
+                                move.addBatch();
+                                moved++;
+                            }
+                            continue;
+                        }
+
+                        Embedding embedding = embeddings.get(i);
+                        if (embedding == null) {
+                            throw new IllegalStateException("No embedding for new chunk " + i + " of document " + documentId);
+                        }
+                        // Bind the pgvector text form directly; the ::vector cast parses it server-side
+                        insert.setString(1, documentId);
+                        insert.setInt(2, i);
+                        insert.setString(3, chunks.get(i));
+                        insert.setString(4, hash);
+                        insert.setString(5, embedding.toVectorLiteral());
+                        insert.addBatch();
+                        if (++added % insertBatchSize == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                    if (moved > 0) {
+                        move.executeBatch();
+                    }
+                }
+
+                for (Deque<long[]> leftovers : storedByHash.values()) {
+                    for (long[] row : leftovers) {
+                        removed.add(row[0]);
+                    }
+                }
+                if (!removed.isEmpty()) {
+                    try (PreparedStatement delete = conn.prepareStatement("DELETE FROM document_chunks WHERE id = ANY(?)")) {
+                        delete.setArray(1, conn.createArrayOf("bigint", removed.toArray()));
+                        delete.executeUpdate();
+                    }
+                }
+
+                conn.commit();
+                return new ChunkChanges(added, removed.size(), unchanged);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error storing in vector database: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Set<String> chunkHashes(String documentId) {
+        vectorSchemaManager.ensureSchema();
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT DISTINCT chunk_hash FROM document_chunks WHERE document_id = ? AND chunk_hash IS NOT NULL")) {
+            stmt.setString(1, documentId);
+            Set<String> hashes = new HashSet<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    hashes.add(rs.getString(1));
+                }
+            }
+            return hashes;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading stored chunks: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Embedding> findEmbeddings(Collection<String> chunkHashes) {
+        Map<String, Embedding> found = new HashMap<>();
+        if (chunkHashes.isEmpty()) {
+            return found;
+        }
+        vectorSchemaManager.ensureSchema();
+
+        // One row per hash is enough; identical text always has the same embedding
+        String sql = "SELECT DISTINCT ON (chunk_hash) chunk_hash, chunk_embedding::text AS embedding "
+                + "FROM document_chunks WHERE chunk_hash = ANY(?) AND chunk_embedding IS NOT NULL";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", chunkHashes.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    found.put(rs.getString("chunk_hash"), Embedding.parseVectorLiteral(rs.getString("embedding")));
+                }
+            }
+            return found;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error looking up stored chunk embeddings: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteDocument(String documentId) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM document_chunks WHERE document_id = ?")) {
+            stmt.setString(1, documentId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error clearing document: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<RetrievedChunk> search(Embedding questionEmbedding, String question, Collection<String> documentIds,
+                                       RetrievalOptions options) {
+        vectorSchemaManager.ensureSchema();
+
+        if (!options.isHybrid()) {
+            return vectorLeg(questionEmbedding, documentIds, options.topK());
+        }
+
+        int candidates = options.topK() * candidatesPerResult;
+        long start = System.nanoTime();
+        Future<List<RetrievedChunk>> vector = legExecutor.submit(() -> vectorLeg(questionEmbedding, documentIds, candidates));
+        Future<List<RetrievedChunk>> text = legExecutor.submit(() -> textLeg(question, documentIds, candidates));
+
+        List<RetrievedChunk> vectorHits = await("vector", vector, start, vectorTimeoutMs);
+        List<RetrievedChunk> textHits = await("text", text, start, textTimeoutMs);
+        if (vectorHits == null && textHits == null) {
+            throw new RuntimeException("Error finding similar chunks: both retrieval legs failed");
+        }
+
+        return fuse(vectorHits, options.vectorWeight(), textHits, options.textWeight(), options.topK(), rrfK);
+    }
+
+    /**
+     * Wait for a leg until its budget (counted from when both legs started) runs out, or null if it
+     * failed or ran over
+     */
+    private List<RetrievedChunk> await(String leg, Future<List<RetrievedChunk>> future, long startNanos, long budgetMs) {
+        try {
+            long remainingNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMs) - System.nanoTime();
+            return future.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            System.err.println("Retrieval " + leg + " leg exceeded " + budgetMs + "ms budget, using the other leg");
+        } catch (ExecutionException e) {
+            System.err.println("Retrieval " + leg + " leg failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        }
+        return null;
+    }
+
+    /**
+     * Weighted reciprocal rank fusion: each leg adds weight / (k + rank) for every chunk it ranked
+     */
+    static List<RetrievedChunk> fuse(List<RetrievedChunk> vectorHits, double vectorWeight,
+                                     List<RetrievedChunk> textHits, double textWeight, int topK, int k) {
+        Map<Long, RetrievedChunk> chunks = new HashMap<>();
+        Map<Long, Double> scores = new HashMap<>();
+        addRanks(vectorHits, vectorWeight, k, chunks, scores);
+        addRanks(textHits, textWeight, k, chunks, scores);
+
+        List<RetrievedChunk> fused = new ArrayList<>(chunks.size());
+        for (RetrievedChunk chunk : chunks.values()) {
+            fused.add(new RetrievedChunk(chunk.chunkId(), chunk.documentId(), chunk.chunkIndex(), chunk.text(),
+                    scores.get(chunk.chunkId())));
+        }
+        fused.sort(Comparator.comparingDouble(RetrievedChunk::score).reversed()
+                .thenComparingLong(RetrievedChunk::chunkId));
+        return fused.size() > topK ? new ArrayList<>(fused.subList(0, topK)) : fused;
+    }
+
+    private static void addRanks(List<RetrievedChunk> hits, double weight, int k,
+                                 Map<Long, RetrievedChunk> chunks, Map<Long, Double> scores) {
+        if (hits == null) {
+            return;
+        }
+        for (int rank = 0; rank < hits.size(); rank++) {
+            RetrievedChunk hit = hits.get(rank);
+            chunks.putIfAbsent(hit.chunkId(), hit);
+            scores.merge(hit.chunkId(), weight / (k + rank + 1), Double::sum);
+        }
+    }
+
+    private List<RetrievedChunk> vectorLeg(Embedding questionEmbedding, Collection<String> documentIds, int limit) {
+        String sql = "SELECT id, document_id, chunk_index, chunk_text, chunk_embedding <=> ?::vector AS distance "
+                + "FROM document_chunks "
+                + (documentIds != null ? "WHERE document_id = ANY(?) " : "")
+                + "ORDER BY chunk_embedding <=> ?::vector LIMIT ?";
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                tuneAnnScan(conn, limit, documentIds != null);
+
+                List<RetrievedChunk> hits = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    String vectorLiteral = questionEmbedding.toVectorLiteral();
+                    int param = 1;
+                    stmt.setQueryTimeout(timeoutSeconds(vectorTimeoutMs));
+                    stmt.setString(param++, vectorLiteral);
+                    if (documentIds != null) {
+                        stmt.setArray(param++, conn.createArrayOf("varchar", documentIds.toArray()));
+                    }
+                    stmt.setString(param++, vectorLiteral);
+                    stmt.setInt(param, limit);
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            hits.add(toChunk(rs, 1 - rs.getDouble("distance")));
+                        }
+                    }
+                }
+                conn.commit();
+
+                // Iterative scans in relaxed order may return rows slightly out of distance order
+                hits.sort(Comparator.comparingDouble(RetrievedChunk::score).reversed());
+                return hits;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding similar chunks: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Transaction-scoped pgvector settings so a filtered ANN query still fills its LIMIT. ef_search
+     * must cover the limit, and iterative scans (pgvector 0.8+) keep walking the index until enough
+     * rows pass the document filter, instead of filtering one fixed candidate list after the fact.
+     */
+    private void tuneAnnScan(Connection conn, int limit, boolean filtered) {
+        trySetLocal(conn, "SET LOCAL hnsw.ef_search = " + Math.max(40, limit));
+        if (filtered && iterativeScanSupported) {
+            boolean supported = trySetLocal(conn, "SET LOCAL hnsw.iterative_scan = relaxed_order")
+                    & trySetLocal(conn, "SET LOCAL ivfflat.iterative_scan = relaxed_order");
+            if (!supported) {
+                System.out.println("pgvector iterative index scans unavailable; filtered searches use post-filtering");
+                iterativeScanSupported = false;
+            }
+        }
+    }
+
+    // A savepoint keeps the transaction usable when the installed pgvector doesn't know a setting
+    private static boolean trySetLocal(Connection conn, String sql) {
+        try {
+            Savepoint savepoint = conn.setSavepoint();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sql);
+                conn.releaseSavepoint(savepoint);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                return false;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private List<RetrievedChunk> textLeg(String question, Collection<String> documentIds, int limit) {
+        // plainto_tsquery ANDs the words; OR them instead so chunks matching any term are ranked
+        String sql = "SELECT id, document_id, chunk_index, chunk_text, ts_rank_cd(chunk_tsv, query) AS rank "
+                + "FROM document_chunks, "
+                + "to_tsquery(?::regconfig, replace(plainto_tsquery(?::regconfig, ?)::text, '&', '|')) query "
+                + "WHERE chunk_tsv @@ query "
+                + (documentIds != null ? "AND document_id = ANY(?) " : "")
+                + "ORDER BY rank DESC LIMIT ?";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int param = 1;
+            stmt.setQueryTimeout(timeoutSeconds(textTimeoutMs));
+            stmt.setString(param++, TEXT_SEARCH_CONFIG);
+            stmt.setString(param++, TEXT_SEARCH_CONFIG);
+            stmt.setString(param++, question);
+            if (documentIds != null) {
+                stmt.setArray(param++, conn.createArrayOf("varchar", documentIds.toArray()));
+            }
+            stmt.setInt(param, limit);
+
+            List<RetrievedChunk> hits = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    hits.add(toChunk(rs, rs.getDouble("rank")));
+                }
+            }
+            return hits;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error in full-text chunk search: " + e.getMessage());
+        }
+    }
+
+    private static RetrievedChunk toChunk(ResultSet rs, double score) throws SQLException {
+        return new RetrievedChunk(rs.getLong("id"), rs.getString("document_id"), rs.getInt("chunk_index"),
+                rs.getString("chunk_text"), score);
+    }
+
+    // JDBC timeouts are whole seconds; the Future budget enforces the exact limit
+    private static int timeoutSeconds(long millis) {
+        return (int) Math.max(1, (millis + 999) / 1000);
+    }
+}
@@ -7,9 +7,8 @@ import AiBot.example.AiBot.repository.QueryLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 public class QueryService {
@@ -23,10 +22,28 @@ public class QueryService {
     @Autowired
     private DocumentService documentService;
 
+    @Autowired
+    private RetrievalSettings retrievalSettings;
+
+    @Autowired
+    private AnswerCoalescer answerCoalescer;
+
+    /**
+     * Retrieval options for a question request: configured defaults with any per-request overrides
+     */
+    public RetrievalOptions retrievalOptions(Map<String, Object> request) {
+        return retrievalSettings.defaultOptions().withOverrides(request);
+    }
+
     public Map<String, Object> askQuestion(String question, String username, Long documentId) {
+        return askQuestion(question, username, documentId, null);
+    }
+
+    public Map<String, Object> askQuestion(String question, String username, Long documentId, RetrievalOptions options) {
         try {
-            // Use RAG-based question answering
-            String answer = documentService.askQuestionAboutDocument(question, documentId);
+            // Use RAG-based question answering, sharing the answer with identical questions in flight
+            String answer = answerCoalescer.answer(documentId, question, options, null,
+                    ignored -> documentService.askQuestionAboutDocument(question, documentId, options));
             
             // Save query log
             QueryLog queryLog = new QueryLog(username, question, answer, documentId);
@@ -46,6 +63,113 @@ public class QueryService {
         }
     }
 
+    /**
+     * Same as askQuestion, but answer text is passed to onDelta while it is being generated
+     */
+    public Map<String, Object> askQuestionStreaming(String question, String username, Long documentId,
+                                                    RetrievalOptions options, Consumer<String> onDelta) {
+        String answer = answerCoalescer.answer(documentId, question, options, onDelta,
+                publish -> documentService.askQuestionAboutDocumentStreaming(question, documentId, options, publish));
+
+        // Save query log once the full answer is known
+        QueryLog queryLog = new QueryLog(username, question, answer, documentId);
+        queryLogRepository.save(queryLog);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("question", question);
+        response.put("answer", answer);
+        response.put("documentId", documentId);
+        response.put("timestamp", queryLog.getTimestamp());
+
+        return response;
+    }
+
+    /**
+     * Answer a question from the whole knowledge base, optionally narrowed by the request's
+     * "documentIds", "uploadedBy" and "tags" filters (every given filter must match; a document
+     * matches "tags" if it has any of them). Each chunk used is returned as a citation.
+     */
+    public Map<String, Object> askAcrossDocuments(String question, String username, Map<String, Object> filters,
+                                                  RetrievalOptions options) {
+        List<Long> scope = resolveScope(filters);
+        CorpusAnswer result = scope != null && scope.isEmpty()
+                ? new CorpusAnswer("No documents match the selected filters.", List.of())
+                : documentService.askAcrossDocuments(question, scope, options);
+
+        QueryLog queryLog = new QueryLog(username, question, result.answer(), null);
+        queryLogRepository.save(queryLog);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("question", question);
+        response.put("answer", result.answer());
+        response.put("citations", citations(result.sources()));
+        response.put("searchedDocuments", scope != null ? scope : "all");
+        response.put("timestamp", queryLog.getTimestamp());
+
+        return response;
+    }
+
+    /**
+     * Document ids matching the filters, or null when no filter was given (search everything)
+     */
+    private List<Long> resolveScope(Map<String, Object> filters) {
+        Set<Long> scope = null;
+
+        if (filters.get("documentIds") instanceof Collection<?> ids) {
+            scope = new LinkedHashSet<>();
+            for (Object id : ids) {
+                scope.add(Long.valueOf(id.toString()));
+            }
+        }
+
+        if (filters.get("uploadedBy") instanceof String uploadedBy && !uploadedBy.isBlank()) {
+            scope = intersect(scope, documentRepository.findIdsByUploadedBy(uploadedBy));
+        }
+
+        if (filters.get("tags") instanceof Collection<?> tags && !tags.isEmpty()) {
+            List<String> normalized = tags.stream().map(tag -> tag.toString().trim().toLowerCase()).toList();
+            scope = intersect(scope, documentRepository.findIdsByAnyTag(normalized));
+        }
+
+        return scope != null ? new ArrayList<>(scope) : null;
+    }
+
+    private static Set<Long> intersect(Set<Long> scope, List<Long> ids) {
+        if (scope == null) {
+            return new LinkedHashSet<>(ids);
+        }
+        scope.retainAll(ids);
+        return scope;
+    }
+
+    private List<Map<String, Object>> citations(List<RetrievedChunk> sources) {
+        Set<Long> documentIds = new HashSet<>();
+        for (RetrievedChunk source : sources) {
+            documentIds.add(Long.valueOf(source.documentId()));
+        }
+        Map<Long, String> fileNames = new HashMap<>();
+        for (Document document : documentRepository.findAllById(documentIds)) {
+            fileNames.put(document.getId(), document.getFileName());
+        }
+
+        List<Map<String, Object>> citations = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            RetrievedChunk source = sources.get(i);
+            Long documentId = Long.valueOf(source.documentId());
+            String text = source.text();
+
+            Map<String, Object> citation = new HashMap<>();
+            citation.put("source", i + 1);
+            citation.put("documentId", documentId);
+            citation.put("fileName", fileNames.get(documentId));
+            citation.put("chunkIndex", source.chunkIndex());
+            citation.put("score", source.score());
+            citation.put("excerpt", text.length() > 200 ? text.substring(0, 200) + "..." : text);
+            citations.add(citation);
+        }
+        return citations;
+    }
+
     public List<QueryLog> getQueryHistory(String username) {
         return queryLogRepository.findByUsernameOrderByTimestampDesc(username);
     }
@@ -62,6 +186,7 @@ public class QueryService {
         response.put("documentId", documentId);
         response.put("fileName", document.getFileName());
         response.put("summary", document.getSummary());
+        response.put("summaryStatus", document.getSummaryStatus());
         response.put("uploadedBy", document.getUploadedBy());
         response.put("uploadedAt", document.getUploadedAt());
         
@@ -0,0 +1,48 @@
+package AiBot.example.AiBot.service;
+
+import java.util.Map;
+
+/**
+ * How chunks are retrieved for one question: the retrieval mode, how many chunks go into the
+ * prompt, and how much each leg counts in hybrid rank fusion.
+ */
+public record RetrievalOptions(String mode, int topK, double vectorWeight, double textWeight) {
+
+    public static final String VECTOR = "vector";
+    public static final String HYBRID = "hybrid";
+
+    private static final int MAX_TOP_K = 50;
+
+    public RetrievalOptions {
+        if (!VECTOR.equals(mode) && !HYBRID.equals(mode)) {
+            throw new IllegalArgumentException("Unsupported retrieval mode: " + mode);
+        }
+        if (topK < 1 || topK > MAX_TOP_K) {
+            throw new IllegalArgumentException("topK must be between 1 and " + MAX_TOP_K);
+        }
+        if (vectorWeight < 0 || textWeight < 0 || vectorWeight + textWeight == 0) {
+            throw new IllegalArgumentException("Retrieval weights must be non-negative and not both zero");
+        }
+    }
+
+    public boolean isHybrid() {
+        return HYBRID.equals(mode);
+    }
+
+    /**
+     * Apply the optional "retrievalMode", "topK", "vectorWeight" and "textWeight" fields of a
+     * question request on top of these options
+     */
+    public RetrievalOptions withOverrides(Map<String, Object> request) {
+        Object modeValue = request.get("retrievalMode");
+        Object topKValue = request.get("topK");
+        Object vectorWeightValue = request.get("vectorWeight");
+        Object textWeightValue = request.get("textWeight");
+
+        return new RetrievalOptions(
+                modeValue != null ? modeValue.toString() : mode,
+                topKValue != null ? Integer.parseInt(topKValue.toString()) : topK,
+                vectorWeightValue != null ? Double.parseDouble(vectorWeightValue.toString()) : vectorWeight,
+                textWeightValue != null ? Double.parseDouble(textWeightValue.toString()) : textWeight);
+    }
+}
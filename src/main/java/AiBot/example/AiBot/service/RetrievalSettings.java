@@ -0,0 +1,30 @@
+package AiBot.example.AiBot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configured retrieval defaults, shared by every vector store implementation
+ */
+@Component
+public class RetrievalSettings {
+
+    @Value("${retrieval.mode:hybrid}")
+    private String defaultMode;
+
+    @Value("${retrieval.top-k:3}")
+    private int defaultTopK;
+
+    @Value("${retrieval.vector-weight:1.0}")
+    private double defaultVectorWeight;
+
+    @Value("${retrieval.text-weight:1.0}")
+    private double defaultTextWeight;
+
+    /**
+     * Retrieval options from configuration, used when a request doesn't override them
+     */
+    public RetrievalOptions defaultOptions() {
+        return new RetrievalOptions(defaultMode, defaultTopK, defaultVectorWeight, defaultTextWeight);
+    }
+}
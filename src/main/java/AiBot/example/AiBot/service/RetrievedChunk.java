@@ -0,0 +1,7 @@
+package AiBot.example.AiBot.service;
+
+/**
+ * A chunk selected for a question's prompt context, with where it came from and its retrieval score.
+ * chunkId is the vector store's id for the chunk, or -1 where there is none (keyword fallback).
+ */
+public record RetrievedChunk(long chunkId, String documentId, int chunkIndex, String text, double score) {}
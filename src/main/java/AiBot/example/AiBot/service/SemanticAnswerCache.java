@@ -0,0 +1,249 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-document cache of answers keyed by question embedding.
+ *
+ * A question hits when a previously answered question for the same document is within the
+ * cosine similarity threshold, so paraphrases skip retrieval and the LLM call. Entries expire
+ * after a TTL; each document keeps its most recently used answers and the least recently used
+ * documents are dropped first. Re-ingesting or clearing a document invalidates its answers.
+ *
+ * An answer computed while its document was being invalidated is not stored: callers read
+ * {@link #generation} before retrieval and pass it to {@link #put}, which drops the answer if the
+ * document has been invalidated since.
+ */
+@Component
+public class SemanticAnswerCache {
+
+    @Value("${answer.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${answer.cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    @Value("${answer.cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${answer.cache.max-entries-per-document:200}")
+    private int maxEntriesPerDocument;
+
+    @Value("${answer.cache.max-documents:500}")
+    private int maxDocuments;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Access-ordered so the least recently queried document is evicted first
+    private final LinkedHashMap<String, List<Entry>> documents = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Entry>> eldest) {
+            if (size() > maxDocuments) {
+                evictions.addAndGet(eldest.getValue().size());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Invalidation stamps: a document's generation is the later of its own last invalidation and the last clear
+    private final Map<String, Long> invalidatedAt = new HashMap<>();
+    private long clearedAt;
+    private long invalidations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("answer.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("answer.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("answer.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("answer.cache.hit.ratio", this, SemanticAnswerCache::hitRatio).register(meterRegistry);
+        Gauge.builder("answer.cache.size", this, SemanticAnswerCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Return the cached answer to the closest earlier question for this document, or null
+     */
+    public String get(String documentId, Embedding question) {
+        if (!enabled) {
+            return null;
+        }
+
+        float[] query = normalize(question.values());
+        long now = System.currentTimeMillis();
+        Entry best = null;
+        double bestScore = similarityThreshold;
+
+        synchronized (this) {
+            List<Entry> entries = documents.get(documentId);
+            if (entries != null) {
+                Iterator<Entry> it = entries.iterator();
+                while (it.hasNext()) {
+                    Entry entry = it.next();
+                    if (entry.expiresAt < now) {
+                        it.remove();
+                        evictions.incrementAndGet();
+                        continue;
+                    }
+                    double score = dot(query, entry.vector);
+                    if (score >= bestScore) {
+                        best = entry;
+                        bestScore = score;
+                    }
+                }
+                if (best != null) {
+                    best.lastUsed = now;
+                }
+            }
+        }
+
+        if (best == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return best.answer;
+    }
+
+    /**
+     * The document's current generation; read it before retrieving the chunks an answer is built from
+     */
+    public synchronized long generation(String documentId) {
+        return Math.max(clearedAt, invalidatedAt.getOrDefault(documentId, 0L));
+    }
+
+    /**
+     * Remember the answer to a question about a document, unless the answer is empty or the
+     * document was invalidated after generation was read
+     */
+    public void put(String documentId, long generation, Embedding question, String answer) {
+        if (!enabled || answer == null || answer.isBlank()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(normalize(question.values()), answer, now + ttlMinutes * 60_000, now);
+
+        synchronized (this) {
+            if (generation(documentId) != generation) {
+                // Built from chunks that have been replaced since
+                return;
+            }
+            List<Entry> entries = documents.computeIfAbsent(documentId, id -> new ArrayList<>());
+            if (entries.size() >= maxEntriesPerDocument) {
+                entries.remove(leastRecentlyUsed(entries));
+                evictions.incrementAndGet();
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Drop every cached answer for a document, e.g. after it is re-ingested or cleared
+     */
+    public synchronized void invalidate(String documentId) {
+        documents.remove(documentId);
+        invalidatedAt.put(documentId, ++invalidations);
+    }
+
+    public synchronized void clear() {
+        documents.clear();
+        invalidatedAt.clear();
+        clearedAt = ++invalidations;
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (List<Entry> entries : documents.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    public double hitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static int leastRecentlyUsed(List<Entry> entries) {
+        int oldest = 0;
+        for (int i = 1; i < entries.size(); i++) {
+            if (entries.get(i).lastUsed < entries.get(oldest).lastUsed) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Unit-length copy, so cosine similarity reduces to a dot product
+     */
+    static float[] normalize(float[] values) {
+        double norm = 0;
+        for (float v : values) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] normalized = new float[values.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < values.length; i++) {
+            normalized[i] = (float) (values[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static final class Entry {
+        final float[] vector;
+        final String answer;
+        final long expiresAt;
+        long lastUsed;
+
+        Entry(float[] vector, String answer, long expiresAt, long lastUsed) {
+            this.vector = vector;
+            this.answer = answer;
+            this.expiresAt = expiresAt;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
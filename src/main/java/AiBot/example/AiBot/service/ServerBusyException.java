@@ -0,0 +1,11 @@
+package AiBot.example.AiBot.service;
+
+/**
+ * Thrown when a question can't be admitted because the server (or the user's share of it) is at capacity.
+ */
+public class ServerBusyException extends RuntimeException {
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,332 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Document;
+import AiBot.example.AiBot.model.DocumentContent;
+import AiBot.example.AiBot.model.SummaryJob;
+import AiBot.example.AiBot.repository.DocumentContentRepository;
+import AiBot.example.AiBot.repository.DocumentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates document summaries in the background once a document is ready for questions,
+ * publishing progress to /topic/documents/{id}/summary.
+ *
+ * Long documents are summarized map-reduce style: the text is cut into sections that fit one
+ * prompt, the sections are summarized in parallel, and the section summaries are combined (in
+ * rounds, if they don't fit one prompt either) into the final summary. A summary is keyed by the
+ * SHA-256 of the extracted text, so re-processing unchanged text, or another document with the
+ * same text, reuses it instead of calling the model again.
+ */
+@Service
+public class SummaryService {
+
+    private static final int SECTION_SUMMARY_TOKENS = 200;
+    private static final int FINAL_SUMMARY_TOKENS = 300;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentContentRepository documentContentRepository;
+
+    @Autowired
+    private ChatCompletionClient chatCompletionClient;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Documents summarized at the same time
+    @Value("${summary.workers:1}")
+    private int workers;
+
+    @Value("${summary.queue-capacity:100}")
+    private int queueCapacity;
+
+    // Section summaries in flight at once, across all documents
+    @Value("${summary.map-parallelism:4}")
+    private int mapParallelism;
+
+    // Text budget of one section (and of one round of combined section summaries)
+    @Value("${summary.section-tokens:3000}")
+    private int sectionTokens;
+
+    @Value("${summary.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private ThreadPoolExecutor executor;
+    private ExecutorService mapExecutor;
+    private Chunker sectionChunker;
+    private final Map<Long, SummaryJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> daemon(runnable, "summary-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        AtomicInteger mapThreadNumber = new AtomicInteger();
+        mapExecutor = Executors.newFixedThreadPool(mapParallelism,
+                runnable -> daemon(runnable, "summary-map-" + mapThreadNumber.incrementAndGet()));
+
+        sectionChunker = new TokenChunker(sectionTokens, 0, Integer.MAX_VALUE);
+
+        Gauge.builder("summary.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+        mapExecutor.shutdownNow();
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Queue the document's summary. A newer submission for the same document supersedes an
+     * older one that is still running; its result is dropped.
+     */
+    public SummaryJob submit(Long documentId) {
+        pruneFinishedJobs();
+
+        SummaryJob job = new SummaryJob(documentId);
+        jobs.put(documentId, job);
+        documentRepository.updateSummaryStatus(documentId, SummaryJob.PENDING);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            System.err.println("Summary queue is full, document " + documentId + " will have no summary");
+            documentRepository.updateSummaryStatus(documentId, SummaryJob.FAILED);
+            finish(job, SummaryJob.FAILED, "Summary queue is full");
+            return job;
+        }
+        publish(job);
+        return job;
+    }
+
+    public Optional<SummaryJob> getJob(Long documentId) {
+        return Optional.ofNullable(jobs.get(documentId));
+    }
+
+    private void run(SummaryJob job) {
+        Long id = job.getDocumentId();
+        try {
+            Document document = documentRepository.findById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+            String content = documentContentRepository.findById(id)
+                    .map(DocumentContent::getContent)
+                    .orElse("");
+            String hash = EmbeddingCache.hash(content);
+
+            // Same text as the last summary of this (or any other) document: nothing to generate
+            String existing = null;
+            if (hash.equals(document.getSummaryContentHash()) && document.getSummary() != null) {
+                existing = document.getSummary();
+            } else {
+                Optional<Document> same = documentRepository
+                        .findFirstBySummaryContentHashAndSummaryStatusOrderByIdAsc(hash, SummaryJob.READY);
+                if (same.isPresent()) {
+                    existing = same.get().getSummary();
+                }
+            }
+            if (existing != null) {
+                System.out.println("Document " + id + " summary reused for unchanged content");
+                store(job, existing, hash);
+                return;
+            }
+
+            job.setStatus(SummaryJob.SUMMARIZING);
+            documentRepository.updateSummaryStatus(id, SummaryJob.SUMMARIZING);
+            publish(job);
+
+            String summary = summarize(content, job);
+            store(job, summary, hash);
+        } catch (Exception e) {
+            System.err.println("Summary of document " + id + " failed: " + e.getMessage());
+            if (jobs.get(id) == job) {
+                documentRepository.updateSummaryStatus(id, SummaryJob.FAILED);
+            }
+            finish(job, SummaryJob.FAILED, e.getMessage());
+        }
+    }
+
+    private void store(SummaryJob job, String summary, String hash) {
+        if (jobs.get(job.getDocumentId()) != job) {
+            // Superseded by a newer version of the document
+            return;
+        }
+        documentRepository.updateSummary(job.getDocumentId(), summary, hash, SummaryJob.READY);
+        finish(job, SummaryJob.READY, null);
+    }
+
+    private void finish(SummaryJob job, String status, String error) {
+        job.setError(error);
+        job.setStatus(status);
+        publish(job);
+    }
+
+    /**
+     * Map-reduce summary of the whole text. Short text is summarized in a single call.
+     */
+    String summarize(String content, SummaryJob job) {
+        if (content == null || content.trim().isEmpty()) {
+            return "No content available for summarization.";
+        }
+
+        List<String> sections = pack(sectionChunker.chunk(content));
+        if (sections.size() <= 1) {
+            job.setSectionsTotal(1);
+            String summary = complete(finalPrompt(content.trim()), FINAL_SUMMARY_TOKENS);
+            job.setSectionsDone(1);
+            return summary;
+        }
+
+        // Map: summarize every section in parallel, keeping document order
+        job.setSectionsTotal(sections.size());
+        publish(job);
+        AtomicInteger done = new AtomicInteger();
+        List<String> partials = inParallel(sections, (i, section) -> {
+            String partial = complete(sectionPrompt(section, i + 1, sections.size()), SECTION_SUMMARY_TOKENS);
+            job.setSectionsDone(done.incrementAndGet());
+            publish(job);
+            return partial;
+        });
+
+        // Reduce: combine section summaries until they fit one prompt
+        while (partials.size() > 1 && TokenChunker.estimateTokens(String.join("\n\n", partials)) > sectionTokens) {
+            List<String> groups = pack(partials);
+            if (groups.size() == partials.size()) {
+                break;
+            }
+            partials = inParallel(groups, (i, group) -> complete(combinePrompt(group), SECTION_SUMMARY_TOKENS));
+        }
+        return complete(combinePrompt(String.join("\n\n", partials)), FINAL_SUMMARY_TOKENS);
+    }
+
+    /**
+     * Join consecutive pieces (separated by blank lines) while they fit the section budget
+     */
+    private List<String> pack(List<String> pieces) {
+        List<String> packed = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int tokens = 0;
+        for (String piece : pieces) {
+            int pieceTokens = TokenChunker.estimateTokens(piece);
+            if (current.length() > 0 && tokens + pieceTokens > sectionTokens) {
+                packed.add(current.toString());
+                current.setLength(0);
+                tokens = 0;
+            }
+            if (current.length() > 0) {
+                current.append("\n\n");
+            }
+            current.append(piece);
+            tokens += pieceTokens;
+        }
+        if (current.length() > 0) {
+            packed.add(current.toString());
+        }
+        return packed;
+    }
+
+    @FunctionalInterface
+    private interface IndexedTask {
+        String apply(int index, String input);
+    }
+
+    private List<String> inParallel(List<String> inputs, IndexedTask task) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(index, inputs.get(index)), mapExecutor));
+        }
+        try {
+            List<String> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<String> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    private String complete(List<Map<String, Object>> messages, int maxTokens) {
+        String response = chatCompletionClient.complete(messages, maxTokens, 0.3);
+        if (response == null || response.isBlank()) {
+            throw new RuntimeException("Empty summary from OpenAI.");
+        }
+        return response.trim();
+    }
+
+    private static List<Map<String, Object>> finalPrompt(String content) {
+        return List.of(
+                Map.of("role", "system", "content", "You summarize company documents accurately and concisely."),
+                Map.of("role", "user", "content",
+                        "Please provide a concise summary of the following document content in 2-3 sentences:\n\n" + content));
+    }
+
+    private static List<Map<String, Object>> sectionPrompt(String section, int number, int total) {
+        return List.of(
+                Map.of("role", "system", "content", "You summarize company documents accurately and concisely."),
+                Map.of("role", "user", "content",
+                        "This is part " + number + " of " + total + " of a document. Summarize its key facts in a few "
+                                + "sentences, keeping names, numbers and dates:\n\n" + section));
+    }
+
+    private static List<Map<String, Object>> combinePrompt(String partials) {
+        return List.of(
+                Map.of("role", "system", "content", "You summarize company documents accurately and concisely."),
+                Map.of("role", "user", "content",
+                        "These are summaries of consecutive parts of one document. Combine them into a concise summary "
+                                + "of the whole document in 2-3 sentences:\n\n" + partials));
+    }
+
+    private void publish(SummaryJob job) {
+        try {
+            messagingTemplate.convertAndSend("/topic/documents/" + job.getDocumentId() + "/summary", toStatusMap(job));
+        } catch (Exception e) {
+            System.err.println("Failed to publish summary progress: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> toStatusMap(SummaryJob job) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("documentId", job.getDocumentId());
+        status.put("summaryStatus", job.getStatus());
+        status.put("progress", job.getProgress());
+        status.put("sectionsDone", job.getSectionsDone());
+        status.put("sectionsTotal", job.getSectionsTotal());
+        status.put("updatedAt", job.getUpdatedAt());
+        if (job.getError() != null) {
+            status.put("error", job.getError());
+        }
+        return status;
+    }
+
+    private void pruneFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getUpdatedAt().isBefore(cutoff));
+    }
+}
@@ -0,0 +1,348 @@
+package AiBot.example.AiBot.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Chunks text to a token budget with a configurable overlap between consecutive chunks.
+ *
+ * One pass over the characters finds paragraph breaks (a blank line), sentence ends ('.', '!' or
+ * '?' followed by whitespace) and token counts together; no regex splits or intermediate arrays.
+ * A paragraph within the budget is one chunk. Longer paragraphs are packed sentence by sentence,
+ * each chunk repeating the trailing sentences of the previous one up to the overlap budget, and a
+ * single sentence over the budget is cut between words.
+ *
+ * Token counts are estimated the way cl100k-style tokenizers behave on prose: one token per four
+ * letters or digits of a word (rounded up) plus one per punctuation or symbol character.
+ *
+ * Text longer than the parallel threshold is cut at paragraph breaks and chunked as fork-join
+ * tasks. Chunks never span a paragraph, so the result is the same as chunking sequentially.
+ */
+public class TokenChunker implements Chunker {
+
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final int parallelThresholdChars;
+
+    public TokenChunker(int maxTokens, int overlapTokens, int parallelThresholdChars) {
+        if (maxTokens < 1) {
+            throw new IllegalArgumentException("maxTokens must be positive");
+        }
+        if (overlapTokens < 0 || overlapTokens >= maxTokens) {
+            throw new IllegalArgumentException("overlapTokens must be between 0 and maxTokens - 1");
+        }
+        if (parallelThresholdChars < 1) {
+            throw new IllegalArgumentException("parallelThresholdChars must be positive");
+        }
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+        this.parallelThresholdChars = parallelThresholdChars;
+    }
+
+    @Override
+    public List<String> chunk(String text) {
+        if (text.length() <= parallelThresholdChars) {
+            List<String> chunks = new ArrayList<>();
+            scan(text, 0, text.length(), chunks);
+            return chunks;
+        }
+        return ForkJoinPool.commonPool().invoke(new ChunkTask(text, 0, text.length()));
+    }
+
+    public int maxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Estimated token count of the text, by the same rules the chunker budgets with
+     */
+    public static int estimateTokens(CharSequence text) {
+        return estimateTokens(text, 0, text.length());
+    }
+
+    private static int estimateTokens(CharSequence text, int from, int to) {
+        int tokens = 0;
+        int wordStart = -1;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+                continue;
+            }
+            if (wordStart >= 0) {
+                tokens += wordTokens(i - wordStart);
+                wordStart = -1;
+            }
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        if (wordStart >= 0) {
+            tokens += wordTokens(to - wordStart);
+        }
+        return tokens;
+    }
+
+    private static int wordTokens(int length) {
+        return (length + 3) / 4;
+    }
+
+    /**
+     * Chunk text[from, to) into out. The scan keeps the sentence spans of the current paragraph
+     * and packs them into chunks whenever a paragraph break (or the end) is reached.
+     */
+    private void scan(String text, int from, int to, List<String> out) {
+        Spans sentences = new Spans();
+        int sentenceStart = -1;
+        int sentenceEnd = -1;
+        int sentenceTokens = 0;
+        int wordStart = -1;
+
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+                if (sentenceStart < 0) {
+                    sentenceStart = i;
+                }
+                sentenceEnd = i + 1;
+                continue;
+            }
+            if (wordStart >= 0) {
+                sentenceTokens += wordTokens(i - wordStart);
+                wordStart = -1;
+            }
+
+            if (Character.isWhitespace(c)) {
+                if (c == '\n') {
+                    int next = skipBlanks(text, i + 1, to);
+                    if (next < to && text.charAt(next) == '\n') {
+                        if (sentenceStart >= 0) {
+                            sentences.add(sentenceStart, sentenceEnd, sentenceTokens);
+                            sentenceStart = -1;
+                            sentenceTokens = 0;
+                        }
+                        pack(text, sentences, out);
+                        i = next;
+                    }
+                }
+                continue;
+            }
+
+            if (sentenceStart < 0) {
+                sentenceStart = i;
+            }
+            sentenceEnd = i + 1;
+            sentenceTokens++;
+            if ((c == '.' || c == '!' || c == '?') && i + 1 < to && Character.isWhitespace(text.charAt(i + 1))) {
+                sentences.add(sentenceStart, sentenceEnd, sentenceTokens);
+                sentenceStart = -1;
+                sentenceTokens = 0;
+            }
+        }
+
+        if (wordStart >= 0) {
+            sentenceTokens += wordTokens(to - wordStart);
+        }
+        if (sentenceStart >= 0) {
+            sentences.add(sentenceStart, sentenceEnd, sentenceTokens);
+        }
+        pack(text, sentences, out);
+    }
+
+    /**
+     * First index at or after from that isn't a non-newline whitespace character
+     */
+    private static int skipBlanks(String text, int from, int to) {
+        int i = from;
+        while (i < to && text.charAt(i) != '\n' && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Pack one paragraph's sentences into chunks, then clear them for the next paragraph
+     */
+    private void pack(String text, Spans sentences, List<String> out) {
+        if (sentences.size == 0) {
+            return;
+        }
+        Spans units = sentences;
+        for (int s = 0; s < sentences.size; s++) {
+            if (sentences.tokens[s] > maxTokens) {
+                units = splitOversized(text, sentences);
+                break;
+            }
+        }
+
+        int n = units.size;
+        int i = 0;
+        while (true) {
+            int j = i;
+            int tokens = 0;
+            while (j < n && (j == i || tokens + units.tokens[j] <= maxTokens)) {
+                tokens += units.tokens[j++];
+            }
+            out.add(text.substring(units.starts[i], units.ends[j - 1]));
+            if (j == n) {
+                break;
+            }
+
+            // Step back over trailing sentences to repeat, leaving room for the next new one
+            int next = j;
+            int overlap = 0;
+            while (next - 1 > i
+                    && overlap + units.tokens[next - 1] <= overlapTokens
+                    && overlap + units.tokens[next - 1] + units.tokens[j] <= maxTokens) {
+                overlap += units.tokens[--next];
+            }
+            i = next;
+        }
+        sentences.size = 0;
+    }
+
+    /**
+     * Copy of the sentences with each one over the budget replaced by word-aligned pieces
+     */
+    private Spans splitOversized(String text, Spans sentences) {
+        Spans units = new Spans();
+        for (int s = 0; s < sentences.size; s++) {
+            if (sentences.tokens[s] <= maxTokens) {
+                units.add(sentences.starts[s], sentences.ends[s], sentences.tokens[s]);
+                continue;
+            }
+
+            int pieceStart = -1;
+            int pieceEnd = -1;
+            int pieceTokens = 0;
+            int i = sentences.starts[s];
+            int end = sentences.ends[s];
+            while (i < end) {
+                if (Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int wordEnd = i;
+                while (wordEnd < end && !Character.isWhitespace(text.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+                int tokens = estimateTokens(text, i, wordEnd);
+
+                if (pieceStart >= 0 && pieceTokens + tokens > maxTokens) {
+                    units.add(pieceStart, pieceEnd, pieceTokens);
+                    pieceStart = -1;
+                    pieceTokens = 0;
+                }
+                if (tokens > maxTokens) {
+                    // No whitespace to cut at; a character is at most one token, so cut by length
+                    for (int p = i; p < wordEnd; ) {
+                        int q = Math.min(wordEnd, p + maxTokens);
+                        if (q < wordEnd && q - 1 > p && Character.isHighSurrogate(text.charAt(q - 1))) {
+                            q--;
+                        }
+                        units.add(p, q, estimateTokens(text, p, q));
+                        p = q;
+                    }
+                } else {
+                    if (pieceStart < 0) {
+                        pieceStart = i;
+                    }
+                    pieceEnd = wordEnd;
+                    pieceTokens += tokens;
+                }
+                i = wordEnd;
+            }
+            if (pieceStart >= 0) {
+                units.add(pieceStart, pieceEnd, pieceTokens);
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Index of the paragraph break nearest after (or else before) mid, or -1 if the range has none
+     */
+    private static int paragraphBreakNear(String text, int from, int mid, int to) {
+        for (int i = mid; i < to; i++) {
+            if (text.charAt(i) == '\n' && isParagraphBreak(text, i, to)) {
+                return i;
+            }
+        }
+        for (int i = mid - 1; i > from; i--) {
+            if (text.charAt(i) == '\n' && isParagraphBreak(text, i, to)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isParagraphBreak(String text, int newline, int to) {
+        int next = skipBlanks(text, newline + 1, to);
+        return next < to && text.charAt(next) == '\n';
+    }
+
+    /**
+     * Halves its range at a paragraph break until it is under the parallel threshold
+     */
+    private class ChunkTask extends RecursiveTask<List<String>> {
+
+        private final String text;
+        private final int from;
+        private final int to;
+
+        ChunkTask(String text, int from, int to) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<String> compute() {
+            int split = to - from > parallelThresholdChars
+                    ? paragraphBreakNear(text, from, from + (to - from) / 2, to)
+                    : -1;
+            if (split < 0) {
+                List<String> chunks = new ArrayList<>();
+                scan(text, from, to, chunks);
+                return chunks;
+            }
+
+            ChunkTask left = new ChunkTask(text, from, split);
+            left.fork();
+            List<String> right = new ChunkTask(text, split, to).compute();
+            List<String> chunks = left.join();
+            chunks.addAll(right);
+            return chunks;
+        }
+    }
+
+    /**
+     * Growable parallel arrays of [start, end) character spans and their token counts
+     */
+    private static final class Spans {
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] tokens = new int[16];
+        int size;
+
+        void add(int start, int end, int tokenCount) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                tokens = Arrays.copyOf(tokens, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            tokens[size] = tokenCount;
+            size++;
+        }
+    }
+}
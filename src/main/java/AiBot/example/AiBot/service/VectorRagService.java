@@ -1,35 +1,39 @@
 package AiBot.example.AiBot.service;
 
+import AiBot.example.AiBot.model.Embedding;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-
-import javax.sql.DataSource;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Service
 public class VectorRagService {
 
-    @Value("${spring.ai.openai.api-key}")
-    private String openaiApiKey;
+    private static final String NO_RELEVANT_CHUNKS =
+            "I couldn't find relevant information in the document to answer your question.";
+
+    @Autowired
+    private VectorStore vectorStore;
+
+    @Autowired
+    private RetrievalSettings retrievalSettings;
+
+    @Autowired
+    private ChunkingSettings chunkingSettings;
 
     @Autowired
-    private DataSource dataSource;
+    private EmbeddingClient embeddingClient;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private ChatCompletionClient chatCompletionClient;
 
     // Cache for embeddings to avoid regenerating them
-    private final Map<String, List<Double>> embeddingCache = new ConcurrentHashMap<>();
+    @Autowired
+    private EmbeddingCache embeddingCache;
+
+    @Autowired
+    private SemanticAnswerCache semanticAnswerCache;
 
     /**
      * Process document: chunk, embed, and store in vector database
@@ -40,15 +44,12 @@ public class VectorRagService {
             List<String> chunks = chunkDocument(content);
             System.out.println("Document " + documentId + " split into " + chunks.size() + " chunks");
 
-            // 2. Generate embeddings for each chunk
-            List<List<Double>> embeddings = new ArrayList<>();
-            for (String chunk : chunks) {
-                List<Double> embedding = generateEmbedding(chunk);
-                embeddings.add(embedding);
-            }
+            // 2. Generate embeddings for chunks the document doesn't have yet, reusing cached and stored ones
+            List<String> hashes = EmbeddingCache.hashAll(chunks);
+            List<Embedding> embeddings = embedNewChunks(documentId, chunks, hashes);
 
             // 3. Store chunks and embeddings in vector database
-            storeInVectorDatabase(documentId, chunks, embeddings);
+            storeInVectorDatabase(documentId, chunks, hashes, embeddings);
 
             System.out.println("Document " + documentId + " processed and stored in vector database");
 
@@ -62,25 +63,41 @@ public class VectorRagService {
      * Ask question using RAG: retrieve relevant chunks and generate answer
      */
     public String askQuestion(String question, String documentId) {
-        try {
-            // 1. Generate embedding for the question
-            List<Double> questionEmbedding = generateEmbedding(question);
-
-            // 2. Find most similar chunks using vector similarity search
-            List<String> relevantChunks = findSimilarChunks(questionEmbedding, documentId, 3);
+        return askQuestion(question, documentId, null);
+    }
 
-            if (relevantChunks.isEmpty()) {
-                return "I couldn't find relevant information in the document to answer your question.";
+    /**
+     * Ask question using RAG with per-request retrieval options (null means the configured defaults)
+     */
+    public String askQuestion(String question, String documentId, RetrievalOptions options) {
+        try {
+            // Answers are only cached for the default retrieval settings
+            boolean cacheable = options == null || options.equals(retrievalSettings.defaultOptions());
+            long generation = semanticAnswerCache.generation(documentId);
+
+            // 1. Generate embedding for the question; a close enough earlier question answers it directly
+            Embedding questionEmbedding = embedAll(List.of(question)).get(0);
+            String cached = cacheable ? semanticAnswerCache.get(documentId, questionEmbedding) : null;
+            if (cached != null) {
+                return cached;
             }
 
-            // 3. Build context from relevant chunks
-            StringBuilder context = new StringBuilder();
-            for (String chunk : relevantChunks) {
-                context.append(chunk).append("\n\n");
+            String context = retrieveContext(questionEmbedding, question, documentId, options);
+            if (context == null) {
+                return NO_RELEVANT_CHUNKS;
             }
 
             // 4. Generate answer using OpenAI with retrieved context
-            return generateAnswerWithOpenAI(question, context.toString());
+            String answer;
+            try {
+                answer = chatCompletionClient.complete(answerMessages(question, context), 500, 0.3);
+            } catch (Exception e) {
+                return "Error calling OpenAI API: " + e.getMessage();
+            }
+            if (cacheable) {
+                semanticAnswerCache.put(documentId, generation, questionEmbedding, answer);
+            }
+            return answer;
 
         } catch (Exception e) {
             return "Error processing question: " + e.getMessage();
@@ -88,248 +105,251 @@ public class VectorRagService {
     }
 
     /**
-     * Generate embeddings using OpenAI API
+     * Ask question using RAG, streaming the answer tokens to onDelta as OpenAI produces them.
+     * Returns the complete answer.
      */
-    private List<Double> generateEmbedding(String text) {
+    public String askQuestionStreaming(String question, String documentId, RetrievalOptions options,
+                                       Consumer<String> onDelta) {
+        boolean cacheable = options == null || options.equals(retrievalSettings.defaultOptions());
+        long generation = semanticAnswerCache.generation(documentId);
+        Embedding questionEmbedding;
+        String context;
         try {
-            String url = "https://api.openai.com/v1/embeddings";
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(openaiApiKey);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "text-embedding-3-small");
-            requestBody.put("input", text);
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class);
-            if (response != null && response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                List<Map<String, Object>> data = (List<Map<String, Object>>) response.getBody().get("data");
-                if (data != null && !data.isEmpty()) {
-                    List<Double> embedding = (List<Double>) data.get(0).get("embedding");
-                    return embedding;
-                }
+            questionEmbedding = embedAll(List.of(question)).get(0);
+            String cached = cacheable ? semanticAnswerCache.get(documentId, questionEmbedding) : null;
+            if (cached != null) {
+                onDelta.accept(cached);
+                return cached;
             }
+            context = retrieveContext(questionEmbedding, question, documentId, options);
+        } catch (Exception e) {
+            String error = "Error processing question: " + e.getMessage();
+            onDelta.accept(error);
+            return error;
+        }
 
-            throw new RuntimeException("Failed to generate embedding");
+        if (context == null) {
+            onDelta.accept(NO_RELEVANT_CHUNKS);
+            return NO_RELEVANT_CHUNKS;
+        }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error calling OpenAI embedding API: " + e.getMessage());
+        String answer = chatCompletionClient.stream(answerMessages(question, context), 500, 0.3, onDelta);
+        if (cacheable) {
+            semanticAnswerCache.put(documentId, generation, questionEmbedding, answer);
         }
+        return answer;
     }
 
     /**
-     * Store chunks and embeddings in PostgreSQL with pgvector
+     * Ask a question across a set of documents (null means the whole knowledge base). The answer
+     * cites the returned sources by number.
      */
-    private void storeInVectorDatabase(String documentId, List<String> chunks, List<List<Double>> embeddings) {
-        try (Connection conn = dataSource.getConnection()) {
-            // Create table if not exists
-            createVectorTableIfNotExists(conn);
-
-            // Insert chunks and embeddings
-            String sql = "INSERT INTO document_chunks (document_id, chunk_text, chunk_embedding) VALUES (?, ?, ?::vector)";
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (int i = 0; i < chunks.size(); i++) {
-                    // Convert Double list to Float array for pgvector compatibility
-                    Float[] embeddingArray = embeddings.get(i).stream()
-                            .map(Double::floatValue)
-                            .toArray(Float[]::new);
-
-                    stmt.setString(1, documentId);
-                    stmt.setString(2, chunks.get(i));
-                    stmt.setArray(3, conn.createArrayOf("float4", embeddingArray));
-                    stmt.executeUpdate();
-                }
+    public CorpusAnswer askAcrossDocuments(String question, Collection<String> documentIds, RetrievalOptions options) {
+        try {
+            Embedding questionEmbedding = embedAll(List.of(question)).get(0);
+            List<RetrievedChunk> sources = vectorStore.search(questionEmbedding, question, documentIds,
+                    options != null ? options : retrievalSettings.defaultOptions());
+            if (sources.isEmpty()) {
+                return new CorpusAnswer(NO_RELEVANT_CHUNKS, List.of());
             }
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Error storing in vector database: " + e.getMessage());
+            // Number each chunk so the model can cite it
+            StringBuilder context = new StringBuilder();
+            for (int i = 0; i < sources.size(); i++) {
+                context.append("[").append(i + 1).append("] ").append(sources.get(i).text()).append("\n\n");
+            }
+
+            String answer = chatCompletionClient.complete(citedAnswerMessages(question, context.toString()), 500, 0.3);
+            return new CorpusAnswer(answer, sources);
+        } catch (Exception e) {
+            return new CorpusAnswer("Error processing question: " + e.getMessage(), List.of());
         }
     }
 
     /**
-     * Create vector table with pgvector extension
+     * Build the prompt context from the chunks most relevant to the question, or null if none match
      */
-    private void createVectorTableIfNotExists(Connection conn) throws SQLException {
-        // Enable pgvector extension
-        try (PreparedStatement stmt = conn.prepareStatement("CREATE EXTENSION IF NOT EXISTS vector")) {
-            stmt.execute();
-        }
-
-        // Create table for document chunks
-        String createTableSql = """
-            CREATE TABLE IF NOT EXISTS document_chunks (
-                id SERIAL PRIMARY KEY,
-                document_id VARCHAR(255) NOT NULL,
-                chunk_text TEXT NOT NULL,
-                chunk_embedding vector(1536),
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-            )
-            """;
-
-        try (PreparedStatement stmt = conn.prepareStatement(createTableSql)) {
-            stmt.execute();
+    private String retrieveContext(Embedding questionEmbedding, String question, String documentId,
+                                   RetrievalOptions options) {
+        // 2. Find the most relevant chunks (vector similarity, fused with full-text rank in hybrid mode)
+        List<RetrievedChunk> relevantChunks = vectorStore.search(questionEmbedding, question, List.of(documentId),
+                options != null ? options : retrievalSettings.defaultOptions());
+
+        if (relevantChunks.isEmpty()) {
+            return null;
         }
 
-        // Create index for similarity search
-        String createIndexSql = "CREATE INDEX IF NOT EXISTS idx_chunk_embedding ON document_chunks USING ivfflat (chunk_embedding vector_cosine_ops)";
-        try (PreparedStatement stmt = conn.prepareStatement(createIndexSql)) {
-            stmt.execute();
+        // 3. Build context from relevant chunks
+        StringBuilder context = new StringBuilder();
+        for (RetrievedChunk chunk : relevantChunks) {
+            context.append(chunk.text()).append("\n\n");
         }
+        return context.toString();
     }
 
     /**
-     * Find similar chunks using vector similarity search
+     * Generate embeddings for texts, only calling OpenAI for texts not in the cache
      */
-    private List<String> findSimilarChunks(List<Double> queryEmbedding, String documentId, int limit) {
-        try (Connection conn = dataSource.getConnection()) {
-            // Convert Double list to float array for pgvector compatibility
-            Float[] embeddingArray = queryEmbedding.stream()
-                    .map(Double::floatValue)
-                    .toArray(Float[]::new);
-
-            String sql = """
-                SELECT chunk_text, chunk_embedding <=> ?::vector as distance
-                FROM document_chunks 
-                WHERE document_id = ?
-                ORDER BY chunk_embedding <=> ?::vector
-                LIMIT ?
-                """;
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setArray(1, conn.createArrayOf("float4", embeddingArray));
-                stmt.setString(2, documentId);
-                stmt.setArray(3, conn.createArrayOf("float4", embeddingArray));
-                stmt.setInt(4, limit);
-
-                List<String> chunks = new ArrayList<>();
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        chunks.add(rs.getString("chunk_text"));
-                    }
-                }
-                return chunks;
+    public List<Embedding> embedAll(List<String> texts) {
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        List<Integer> missingPositions = new ArrayList<>();
+        List<String> missingTexts = new ArrayList<>();
+        List<String> missingHashes = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            String hash = EmbeddingCache.hash(texts.get(i));
+            Embedding cached = embeddingCache.getByHash(hash);
+            embeddings.add(cached);
+            if (cached == null) {
+                missingPositions.add(i);
+                missingTexts.add(texts.get(i));
+                missingHashes.add(hash);
             }
+        }
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Error finding similar chunks: " + e.getMessage());
+        if (!missingTexts.isEmpty()) {
+            List<Embedding> generated = embeddingClient.embedAll(missingTexts);
+            for (int i = 0; i < generated.size(); i++) {
+                embeddingCache.putByHash(missingHashes.get(i), generated.get(i));
+                embeddings.set(missingPositions.get(i), generated.get(i));
+            }
         }
+
+        return embeddings;
     }
 
     /**
-     * Generate answer using OpenAI with retrieved context
+     * Generate embeddings for document chunks. Chunks whose text is already stored for another
+     * document (same SHA-256) reuse that embedding; only the rest are sent to OpenAI.
      */
-    private String generateAnswerWithOpenAI(String question, String context) {
-        try {
-            String url = "https://api.openai.com/v1/chat/completions";
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(openaiApiKey);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "gpt-4o-mini");
-            requestBody.put("messages", Arrays.asList(
-                    Map.of("role", "system", "content",
-                            "You are a helpful assistant that answers questions based on the provided document context. " +
-                                    "Only use information from the context to answer questions. If the context doesn't contain " +
-                                    "enough information to answer the question, say so. Be concise and accurate."),
-                    Map.of("role", "user", "content",
-                            "Context:\n" + context + "\n\nQuestion: " + question)
-            ));
-            requestBody.put("max_tokens", 500);
-            requestBody.put("temperature", 0.3);
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                List<Map<String, Object>> choices = (List<Map<String, Object>>) response.getBody().get("choices");
-                if (choices != null && !choices.isEmpty()) {
-                    Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-                    return (String) message.get("content");
+    public List<Embedding> embedChunks(List<String> chunks) {
+        return embedChunks(chunks, EmbeddingCache.hashAll(chunks));
+    }
+
+    private List<Embedding> embedChunks(List<String> chunks, List<String> hashes) {
+        // Identical chunks are looked up and embedded once
+        Map<String, List<Integer>> positionsByHash = new LinkedHashMap<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            positionsByHash.computeIfAbsent(hashes.get(i), h -> new ArrayList<>()).add(i);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+        Iterator<Map.Entry<String, List<Integer>>> uncached = positionsByHash.entrySet().iterator();
+        while (uncached.hasNext()) {
+            Map.Entry<String, List<Integer>> entry = uncached.next();
+            Embedding cached = embeddingCache.getByHash(entry.getKey());
+            if (cached != null) {
+                for (int position : entry.getValue()) {
+                    embeddings.set(position, cached);
                 }
+                uncached.remove();
             }
+        }
 
-            return "Failed to generate answer from OpenAI.";
+        if (!positionsByHash.isEmpty()) {
+            Map<String, Embedding> stored = vectorStore.findEmbeddings(positionsByHash.keySet());
+            for (Map.Entry<String, Embedding> entry : stored.entrySet()) {
+                embeddingCache.putByHash(entry.getKey(), entry.getValue());
+                for (int position : positionsByHash.remove(entry.getKey())) {
+                    embeddings.set(position, entry.getValue());
+                }
+            }
+            if (!stored.isEmpty()) {
+                System.out.println("Reused " + stored.size() + " stored chunk embeddings");
+            }
+        }
 
-        } catch (Exception e) {
-            return "Error calling OpenAI API: " + e.getMessage();
+        if (positionsByHash.isEmpty()) {
+            return embeddings;
+        }
+        List<String> missingTexts = new ArrayList<>(positionsByHash.size());
+        for (List<Integer> positions : positionsByHash.values()) {
+            missingTexts.add(chunks.get(positions.get(0)));
+        }
+        List<Embedding> generated = embeddingClient.embedAll(missingTexts);
+        int next = 0;
+        for (Map.Entry<String, List<Integer>> entry : positionsByHash.entrySet()) {
+            Embedding embedding = generated.get(next++);
+            embeddingCache.putByHash(entry.getKey(), embedding);
+            for (int position : entry.getValue()) {
+                embeddings.set(position, embedding);
+            }
         }
+        return embeddings;
     }
 
     /**
-     * Split document into chunks for processing
+     * Embeddings for a new version of a document's chunks. Chunks the document already has stored
+     * are left null: storing keeps their existing embedding, so a revision only pays for the
+     * chunks that changed. hashes holds the hash of each chunk.
      */
-    private List<String> chunkDocument(String content) {
-        // Split by paragraphs first
-        String[] paragraphs = content.split("\n\n");
-        List<String> chunks = new ArrayList<>();
-
-        for (String paragraph : paragraphs) {
-            paragraph = paragraph.trim();
-            if (!paragraph.isEmpty()) {
-                // If paragraph is too long, split it further
-                if (paragraph.length() > 1000) {
-                    chunks.addAll(splitLongParagraph(paragraph));
-                } else {
-                    chunks.add(paragraph);
-                }
+    public List<Embedding> embedNewChunks(String documentId, List<String> chunks, List<String> hashes) {
+        Set<String> stored = vectorStore.chunkHashes(documentId);
+        List<Integer> newPositions = new ArrayList<>();
+        List<String> newChunks = new ArrayList<>();
+        List<String> newHashes = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!stored.contains(hashes.get(i))) {
+                newPositions.add(i);
+                newChunks.add(chunks.get(i));
+                newHashes.add(hashes.get(i));
             }
         }
 
-        return chunks;
+        List<Embedding> embeddings = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+        List<Embedding> generated = embedChunks(newChunks, newHashes);
+        for (int i = 0; i < newPositions.size(); i++) {
+            embeddings.set(newPositions.get(i), generated.get(i));
+        }
+        return embeddings;
     }
 
     /**
-     * Split long paragraphs into smaller chunks
+     * Store chunks and embeddings in the configured vector store, replacing what the document had
      */
-    private List<String> splitLongParagraph(String paragraph) {
-        List<String> chunks = new ArrayList<>();
-        int maxLength = 1000;
-
-        if (paragraph.length() <= maxLength) {
-            chunks.add(paragraph);
-            return chunks;
-        }
-
-        // Split by sentences
-        String[] sentences = paragraph.split("(?<=[.!?])\\s+");
-        StringBuilder currentChunk = new StringBuilder();
+    public ChunkChanges storeInVectorDatabase(String documentId, List<String> chunks, List<String> hashes,
+                                              List<Embedding> embeddings) {
+        ChunkChanges changes = vectorStore.store(documentId, chunks, hashes, embeddings);
+        // Answers cached against the previous version of the document are stale now
+        semanticAnswerCache.invalidate(documentId);
+        return changes;
+    }
 
-        for (String sentence : sentences) {
-            if (currentChunk.length() + sentence.length() > maxLength) {
-                if (currentChunk.length() > 0) {
-                    chunks.add(currentChunk.toString().trim());
-                    currentChunk = new StringBuilder();
-                }
-            }
-            currentChunk.append(sentence).append(" ");
-        }
+    private List<Map<String, Object>> answerMessages(String question, String context) {
+        return Arrays.asList(
+                Map.of("role", "system", "content",
+                        "You are a helpful assistant that answers questions based on the provided document context. " +
+                                "Only use information from the context to answer questions. If the context doesn't contain " +
+                                "enough information to answer the question, say so. Be concise and accurate."),
+                Map.of("role", "user", "content",
+                        "Context:\n" + context + "\n\nQuestion: " + question)
+        );
+    }
 
-        if (currentChunk.length() > 0) {
-            chunks.add(currentChunk.toString().trim());
-        }
+    private List<Map<String, Object>> citedAnswerMessages(String question, String context) {
+        return Arrays.asList(
+                Map.of("role", "system", "content",
+                        "You are a helpful assistant that answers questions from a company knowledge base. " +
+                                "The context is a list of numbered excerpts from different documents. Only use information " +
+                                "from the context, and cite the excerpts you used by their number, e.g. [2]. If the context " +
+                                "doesn't contain enough information to answer the question, say so. Be concise and accurate."),
+                Map.of("role", "user", "content",
+                        "Context:\n" + context + "\n\nQuestion: " + question)
+        );
+    }
 
-        return chunks;
+    /**
+     * Split document into chunks for processing
+     */
+    public List<String> chunkDocument(String content) {
+        return chunkingSettings.documentChunker().chunk(content);
     }
 
     /**
      * Clear all data for a document
      */
     public void clearDocument(String documentId) {
-        try (Connection conn = dataSource.getConnection()) {
-            String sql = "DELETE FROM document_chunks WHERE document_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, documentId);
-                stmt.executeUpdate();
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException("Error clearing document: " + e.getMessage());
-        }
+        vectorStore.deleteDocument(documentId);
+        semanticAnswerCache.invalidate(documentId);
     }
 }
@@ -0,0 +1,143 @@
+package AiBot.example.AiBot.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates the pgvector schema for document chunks once, instead of on every ingest.
+ *
+ * Bootstrap is attempted at startup; if the database isn't ready (or isn't PostgreSQL)
+ * it is retried lazily by the first caller of {@link #ensureSchema()}.
+ */
+@Component
+@ConditionalOnProperty(name = "vector.store.type", havingValue = "pgvector", matchIfMissing = true)
+public class VectorSchemaManager {
+
+    @Autowired
+    private DataSource dataSource;
+
+    // hnsw or ivfflat
+    @Value("${vector.index.type:hnsw}")
+    private String indexType;
+
+    @Value("${vector.index.ivfflat.lists:100}")
+    private int ivfflatLists;
+
+    @Value("${vector.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${vector.index.hnsw.ef-construction:64}")
+    private int hnswEfConstruction;
+
+    private volatile boolean initialized;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeOnStartup() {
+        try {
+            ensureSchema();
+        } catch (RuntimeException e) {
+            System.err.println("Vector schema bootstrap skipped at startup: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Make sure the document_chunks table and its indexes exist. Cheap after the first success.
+     */
+    public void ensureSchema() {
+        if (initialized) {
+            return;
+        }
+        synchronized (this) {
+            if (initialized) {
+                return;
+            }
+            try (Connection conn = dataSource.getConnection()) {
+                createSchema(conn);
+                initialized = true;
+                System.out.println("Vector schema ready (" + indexType + " index)");
+            } catch (SQLException e) {
+                throw new RuntimeException("Error creating vector schema: " + e.getMessage());
+            }
+        }
+    }
+
+    private void createSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Enable pgvector extension
+            stmt.execute("CREATE EXTENSION IF NOT EXISTS vector");
+
+            // Create table for document chunks
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS document_chunks (
+                    id SERIAL PRIMARY KEY,
+                    document_id VARCHAR(255) NOT NULL,
+                    chunk_text TEXT NOT NULL,
+                    chunk_embedding vector(1536),
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+                """);
+
+            // Lookups and deletes by document
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_chunk_document_id ON document_chunks (document_id)");
+
+            // Position of the chunk within its document, returned with corpus-wide citations
+            stmt.execute("ALTER TABLE document_chunks ADD COLUMN IF NOT EXISTS chunk_index INT");
+
+            // SHA-256 of chunk_text, so identical chunks in other documents reuse the stored embedding
+            stmt.execute("ALTER TABLE document_chunks ADD COLUMN IF NOT EXISTS chunk_hash CHAR(64)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_chunk_hash ON document_chunks (chunk_hash)");
+
+            // Full-text leg of hybrid retrieval: a generated tsvector kept in sync by PostgreSQL, GIN-indexed
+            stmt.execute("ALTER TABLE document_chunks ADD COLUMN IF NOT EXISTS chunk_tsv tsvector "
+                    + "GENERATED ALWAYS AS (to_tsvector('" + PgVectorStore.TEXT_SEARCH_CONFIG + "', chunk_text)) STORED");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_chunk_tsv ON document_chunks USING gin (chunk_tsv)");
+
+            // Rebuild the similarity index if the configured access method changed
+            String existingMethod = findIndexMethod(conn, "idx_chunk_embedding");
+            if (existingMethod != null && !existingMethod.equalsIgnoreCase(indexType)) {
+                System.out.println("Replacing " + existingMethod + " similarity index with " + indexType);
+                stmt.execute("DROP INDEX idx_chunk_embedding");
+            }
+            stmt.execute(similarityIndexSql());
+        }
+    }
+
+    private String similarityIndexSql() {
+        if ("ivfflat".equalsIgnoreCase(indexType)) {
+            return "CREATE INDEX IF NOT EXISTS idx_chunk_embedding ON document_chunks "
+                    + "USING ivfflat (chunk_embedding vector_cosine_ops) WITH (lists = " + ivfflatLists + ")";
+        }
+        if ("hnsw".equalsIgnoreCase(indexType)) {
+            return "CREATE INDEX IF NOT EXISTS idx_chunk_embedding ON document_chunks "
+                    + "USING hnsw (chunk_embedding vector_cosine_ops) WITH (m = " + hnswM
+                    + ", ef_construction = " + hnswEfConstruction + ")";
+        }
+        throw new IllegalArgumentException("Unsupported vector.index.type: " + indexType);
+    }
+
+    private String findIndexMethod(Connection conn, String indexName) throws SQLException {
+        String sql = """
+            SELECT am.amname
+            FROM pg_class c
+            JOIN pg_am am ON am.oid = c.relam
+            WHERE c.relname = ? AND c.relkind = 'i'
+            """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, indexName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Where document chunks and their embeddings are kept and searched. Selected with
+ * vector.store.type: "pgvector" (PostgreSQL, the default) or "embedded" (local HNSW files).
+ */
+public interface VectorStore {
+
+    /**
+     * Make the stored chunks of a document match the given list. chunkHashes holds the hash of
+     * each chunk (see {@link EmbeddingCache#hashAll}). Chunks whose text is already stored for
+     * the document are kept with their embedding, so their entry in embeddings may be null; new
+     * chunks are added and chunks no longer present are removed.
+     */
+    ChunkChanges store(String documentId, List<String> chunks, List<String> chunkHashes, List<Embedding> embeddings);
+
+    /**
+     * Hashes (SHA-256 of the text) of the chunks stored for a document
+     */
+    Set<String> chunkHashes(String documentId);
+
+    /**
+     * The options.topK() best chunks for a question across a set of documents, best first.
+     * A null set searches the whole corpus.
+     */
+    List<RetrievedChunk> search(Embedding questionEmbedding, String question, Collection<String> documentIds,
+                                RetrievalOptions options);
+
+    /**
+     * Embeddings already stored for chunk texts, keyed by chunk hash (SHA-256 of the text), so
+     * identical chunks in other documents aren't embedded again. Unknown hashes are left out.
+     */
+    Map<String, Embedding> findEmbeddings(Collection<String> chunkHashes);
+
+    /**
+     * Remove every chunk of a document
+     */
+    void deleteDocument(String documentId);
+}
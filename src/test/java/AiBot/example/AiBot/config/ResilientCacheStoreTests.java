@@ -0,0 +1,218 @@
+package AiBot.example.AiBot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientCacheStoreTests {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final FlakyStore redis = new FlakyStore();
+    private final AtomicLong clock = new AtomicLong();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResilientCacheStore store = new ResilientCacheStore(redis, Duration.ofMillis(50),
+            new CircuitBreaker("test", 3, Duration.ofSeconds(30), clock::get), 2, 100, 100, meterRegistry);
+
+    @AfterEach
+    void close() throws Exception {
+        redis.release.countDown();
+        store.close();
+    }
+
+    @Test
+    void slowReadsAreMissesAndOpenTheCircuit() {
+        redis.values.put("k", bytes("v"));
+        redis.slow.set(true);
+
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            assertNull(store.get("k"));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, store.getBreakerState());
+        int calls = redis.gets.get();
+        assertNull(store.get("k"));
+        assertEquals(calls, redis.gets.get(), "open circuit must not call the store");
+        assertEquals(2.0, meterRegistry.get("cache.store.breaker.state").gauge().value());
+        assertEquals(3.0, meterRegistry.get("cache.store.failures").functionCounter().count());
+    }
+
+    @Test
+    void putsDoNotWaitForTheStore() throws Exception {
+        redis.slow.set(true);
+
+        long start = System.nanoTime();
+        store.put("k", bytes("v"), TTL);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        assertFalse(redis.values.containsKey("k"));
+
+        redis.release.countDown();
+        waitFor(() -> redis.values.containsKey("k"));
+        assertEquals(TTL, redis.ttls.get("k"));
+    }
+
+    @Test
+    void fallbackServesWhileTheStoreIsDownAndIsDroppedOnRecovery() throws Exception {
+        redis.down.set(true);
+        for (int i = 0; i < 3; i++) {
+            assertNull(store.get("k" + i));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, store.getBreakerState());
+
+        store.put("k", bytes("from fallback"), TTL);
+        assertEquals("from fallback", new String(store.get("k")));
+        assertNull(store.get("missing"));
+        // One hit; the missing key and the three failed reads fell back and missed
+        assertEquals(0.2, meterRegistry.get("cache.store.fallback.hit.ratio").gauge().value());
+        store.put("gone", bytes("value"), TTL);
+        store.delete("gone");
+        assertNull(store.get("gone"));
+
+        store.put("k", bytes("stale"), TTL);
+        redis.down.set(false);
+        redis.values.put("k", bytes("fresh"));
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        // The trial read closes the circuit; the fallback copy is no longer used
+        assertEquals("fresh", new String(store.get("k")));
+        assertEquals(CircuitBreaker.State.CLOSED, store.getBreakerState());
+        redis.down.set(true);
+        assertNull(store.get("k"));
+    }
+
+    @Test
+    void deletesMissedWhileOpenAreReplayedOnRecovery() throws Exception {
+        redis.values.put("c:answers:a", bytes("stale"));
+        redis.values.put("c:docs:1", bytes("stale"));
+        redis.values.put("c:docs:2", bytes("stale"));
+        redis.down.set(true);
+        for (int i = 0; i < 3; i++) {
+            store.get("x" + i);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, store.getBreakerState());
+
+        store.delete("c:answers:a");
+        store.deleteByPrefix("c:docs:");
+        assertEquals(2.0, meterRegistry.get("cache.store.deletes.pending").gauge().value());
+
+        redis.down.set(false);
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        // Until the store has applied the deletes, it must not serve the evicted entries
+        assertNull(store.get("c:answers:a"));
+        assertNull(store.get("c:docs:1"));
+        assertNull(store.get("unrelated"));
+        assertEquals(CircuitBreaker.State.CLOSED, store.getBreakerState());
+
+        waitFor(() -> redis.values.isEmpty());
+        waitFor(() -> meterRegistry.get("cache.store.deletes.pending").gauge().value() == 0.0);
+    }
+
+    @Test
+    void failedTrialReopensTheCircuit() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, Duration.ofSeconds(30), clock::get);
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest(), "only one trial call at a time");
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.recordSuccess());
+        assertTrue(breaker.allowRequest());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Store that can be switched to failing, or to blocking until released
+     */
+    private static class FlakyStore implements CacheStore {
+        final Map<String, byte[]> values = new ConcurrentHashMap<>();
+        final Map<String, Duration> ttls = new ConcurrentHashMap<>();
+        final AtomicBoolean down = new AtomicBoolean();
+        final AtomicBoolean slow = new AtomicBoolean();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger gets = new AtomicInteger();
+
+        private void call() {
+            if (down.get()) {
+                throw new IllegalStateException("Unable to connect to Redis");
+            }
+            if (slow.get()) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public byte[] get(String key) {
+            gets.incrementAndGet();
+            call();
+            return values.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] value, Duration ttl) {
+            call();
+            values.put(key, value);
+            ttls.put(key, ttl);
+        }
+
+        @Override
+        public void delete(String key) {
+            call();
+            values.remove(key);
+        }
+
+        @Override
+        public void deleteByPrefix(String prefix) {
+            call();
+            values.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+
+        @Override
+        public void publish(String message) {
+            call();
+        }
+
+        @Override
+        public void subscribe(Consumer<String> listener) {
+        }
+    }
+}
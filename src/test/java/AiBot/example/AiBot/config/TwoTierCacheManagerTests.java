@@ -0,0 +1,141 @@
+package AiBot.example.AiBot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwoTierCacheManagerTests {
+
+    private static final CacheSpec DEFAULTS = new CacheSpec(Duration.ofMinutes(10), Duration.ofMinutes(1), 100);
+
+    private final InMemoryStore store = new InMemoryStore();
+    private final TwoTierCacheManager nodeA = newNode();
+    private final TwoTierCacheManager nodeB = newNode();
+
+    @Test
+    void keysAreHashedAndValuesSharedAcrossNodes() {
+        String prompt = "Summarize this document: " + "lorem ipsum ".repeat(1000);
+        LocalDateTime uploadedAt = LocalDateTime.of(2025, 3, 1, 9, 30);
+        nodeA.getCache("aiResponses").put(prompt, "A short answer.");
+        nodeA.getCache("documents").put(7L, new CachedDocument("handbook.pdf", uploadedAt, List.of("hr")));
+        nodeA.getCache("documents").put(8L, Map.of("fileName", "policy.pdf", "pages", 12));
+
+        assertEquals(3, store.values.size());
+        for (String key : store.values.keySet()) {
+            assertTrue(key.matches("c:(aiResponses|documents):[A-Za-z0-9_-]{22}"), key);
+        }
+        assertEquals(Duration.ofMinutes(10), store.ttls.get(store.values.keySet().iterator().next()));
+
+        assertEquals("A short answer.", nodeB.getCache("aiResponses").get(prompt, String.class));
+        assertEquals(new CachedDocument("handbook.pdf", uploadedAt, List.of("hr")),
+                nodeB.getCache("documents").get(7L, CachedDocument.class));
+        assertEquals(Map.of("fileName", "policy.pdf", "pages", 12), nodeB.getCache("documents").get(8L, Map.class));
+    }
+
+    @Test
+    void hotEntriesAreServedFromTheLocalTier() {
+        Cache cache = nodeA.getCache("aiResponses");
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("answer", cache.get("question", () -> {
+                loads.incrementAndGet();
+                return "answer";
+            }));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, store.gets.get());
+        assertEquals(1, store.values.size());
+    }
+
+    @Test
+    void writesOnOneNodeInvalidateOtherNodesLocalCopies() {
+        nodeA.getCache("aiResponses").put("question", "first answer");
+        assertEquals("first answer", nodeB.getCache("aiResponses").get("question", String.class));
+
+        nodeA.getCache("aiResponses").put("question", "second answer");
+        assertEquals("second answer", nodeB.getCache("aiResponses").get("question", String.class));
+
+        nodeA.getCache("aiResponses").evict("question");
+        assertNull(nodeB.getCache("aiResponses").get("question"));
+
+        nodeB.getCache("aiResponses").put("other", "value");
+        nodeA.getCache("aiResponses").clear();
+        assertNull(nodeB.getCache("aiResponses").get("other"));
+        assertTrue(store.values.isEmpty());
+    }
+
+    @Test
+    void specsOverrideDefaultsPerCache() {
+        CacheSpec spec = CacheSpec.parse("ttl=30m,l1-max-size=50", DEFAULTS);
+        assertEquals(new CacheSpec(Duration.ofMinutes(30), Duration.ofMinutes(1), 50), spec);
+
+        // A local copy never outlives the shared entry
+        assertEquals(Duration.ofSeconds(20), CacheSpec.parse("ttl=20s", DEFAULTS).l1Ttl());
+        assertThrows(IllegalArgumentException.class, () -> CacheSpec.parse("size=5", DEFAULTS));
+
+        TwoTierCache cache = (TwoTierCache) nodeA.getCache("summaries");
+        assertEquals(Duration.ofHours(1), cache.getSpec().ttl());
+    }
+
+    record CachedDocument(String fileName, LocalDateTime uploadedAt, List<String> tags) {}
+
+    private TwoTierCacheManager newNode() {
+        return new TwoTierCacheManager(
+                name -> CacheSpec.parse(name.equals("summaries") ? "ttl=1h" : null, DEFAULTS),
+                store, new CacheValueCodec());
+    }
+
+    /**
+     * Shared tier for two nodes in one JVM; published messages are delivered synchronously
+     */
+    private static class InMemoryStore implements CacheStore {
+        final Map<String, byte[]> values = new ConcurrentHashMap<>();
+        final Map<String, Duration> ttls = new ConcurrentHashMap<>();
+        final AtomicInteger gets = new AtomicInteger();
+        final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+        @Override
+        public byte[] get(String key) {
+            gets.incrementAndGet();
+            return values.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] value, Duration ttl) {
+            values.put(key, value);
+            ttls.put(key, ttl);
+        }
+
+        @Override
+        public void delete(String key) {
+            values.remove(key);
+        }
+
+        @Override
+        public void deleteByPrefix(String prefix) {
+            values.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+
+        @Override
+        public void publish(String message) {
+            listeners.forEach(listener -> listener.accept(message));
+        }
+
+        @Override
+        public void subscribe(Consumer<String> listener) {
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package AiBot.example.AiBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerCoalescerTests {
+
+    private static final RetrievalOptions OPTIONS = new RetrievalOptions(RetrievalOptions.VECTOR, 5, 1.0, 1.0);
+
+    private AnswerCoalescer coalescer;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        AnswerExecutionService executionService = new AnswerExecutionService();
+        coalescer = new AnswerCoalescer();
+        ReflectionTestUtils.setField(coalescer, "answerExecutionService", executionService);
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        coalescer.registerMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void identicalQuestionsInFlightShareOneAnswer() throws Exception {
+        CompletableFuture<String> first = ask(1L, "What is the leave policy?", OPTIONS);
+        waitFor(() -> computations.get() == 1);
+        List<CompletableFuture<String>> others = new ArrayList<>();
+        for (String question : List.of("what is the leave policy", "  What  is the LEAVE policy??", "What is the leave policy?")) {
+            others.add(ask(1L, question, OPTIONS));
+        }
+        waitFor(() -> coalescedCount() == 3);
+
+        release.countDown();
+        assertEquals("answer 1", first.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<String> other : others) {
+            assertEquals("answer 1", other.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, computations.get());
+
+        // Once answered, the same question is computed again
+        assertEquals("answer 2", ask(1L, "What is the leave policy?", OPTIONS).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void differentDocumentsOrOptionsAreNotShared() throws Exception {
+        RetrievalOptions hybrid = new RetrievalOptions(RetrievalOptions.HYBRID, 5, 1.0, 1.0);
+        List<CompletableFuture<String>> answers = List.of(
+                ask(1L, "Who approves expenses?", OPTIONS),
+                ask(2L, "Who approves expenses?", OPTIONS),
+                ask(1L, "Who approves expenses?", hybrid));
+        waitFor(() -> computations.get() == 3);
+
+        release.countDown();
+        for (CompletableFuture<String> answer : answers) {
+            answer.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0.0, coalescedCount());
+    }
+
+    @Test
+    void lateStreamingCallersGetTheTextSoFarThenTheRest() throws Exception {
+        CountDownLatch firstDelta = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> coalescer.answer(1L, "q", OPTIONS, delta -> { },
+                publish -> {
+                    publish.accept("Employees get ");
+                    firstDelta.countDown();
+                    await(release);
+                    publish.accept("25 days.");
+                    return "Employees get 25 days.";
+                }), callers);
+        assertTrue(firstDelta.await(5, TimeUnit.SECONDS));
+
+        StringBuilder streamed = new StringBuilder();
+        List<String> nonStreamingAnswer = new ArrayList<>();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(
+                () -> coalescer.answer(1L, "Q?", OPTIONS, streamed::append, publish -> fail("should join the leader")), callers);
+        CompletableFuture<Void> plain = CompletableFuture.runAsync(
+                () -> nonStreamingAnswer.add(coalescer.answer(1L, "q", OPTIONS, null, publish -> fail("should join the leader"))), callers);
+        waitFor(() -> coalescedCount() == 2);
+
+        release.countDown();
+        assertEquals("Employees get 25 days.", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("Employees get 25 days.", follower.get(5, TimeUnit.SECONDS));
+        assertEquals("Employees get 25 days.", streamed.toString());
+        plain.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("Employees get 25 days."), nonStreamingAnswer);
+    }
+
+    @Test
+    void failuresReachEveryWaitingCaller() throws Exception {
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> coalescer.answer(1L, "q", OPTIONS, null,
+                publish -> {
+                    await(release);
+                    throw new IllegalStateException("LLM unavailable");
+                }), callers);
+        waitFor(() -> inFlightSize() == 1);
+        CompletableFuture<String> follower = ask(1L, "q", OPTIONS);
+        waitFor(() -> coalescedCount() == 1);
+
+        release.countDown();
+        Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertEquals("LLM unavailable", leaderError.getCause().getMessage());
+        assertEquals("LLM unavailable", followerError.getCause().getMessage());
+        assertEquals(0, inFlightSize());
+    }
+
+    @Test
+    void errorsAlsoEndTheFlight() throws Exception {
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> coalescer.answer(1L, "q", OPTIONS, null,
+                publish -> {
+                    await(release);
+                    throw new StackOverflowError();
+                }), callers);
+        waitFor(() -> inFlightSize() == 1);
+        CompletableFuture<String> follower = ask(1L, "q", OPTIONS);
+        waitFor(() -> coalescedCount() == 1);
+
+        release.countDown();
+        assertInstanceOf(StackOverflowError.class, assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertInstanceOf(StackOverflowError.class, assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, inFlightSize());
+        assertEquals("answer 1", ask(1L, "q", OPTIONS).get(5, TimeUnit.SECONDS));
+    }
+
+    private CompletableFuture<String> ask(Long documentId, String question, RetrievalOptions options) {
+        return CompletableFuture.supplyAsync(() -> coalescer.answer(documentId, question, options, null, this::compute), callers);
+    }
+
+    private String compute(Consumer<String> publish) {
+        int n = computations.incrementAndGet();
+        await(release);
+        return "answer " + n;
+    }
+
+    private double coalescedCount() {
+        return meterRegistry.get("query.coalesced").counter().count();
+    }
+
+    private double inFlightSize() {
+        return meterRegistry.get("query.inflight").gauge().value();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,132 @@
+package AiBot.example.AiBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerExecutionServiceTests {
+
+    private AnswerExecutionService service;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        service = new AnswerExecutionService();
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "virtualThreads", true);
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "maxPending", 3);
+        ReflectionTestUtils.setField(service, "maxPerUser", 2);
+        ReflectionTestUtils.setField(service, "permitTimeoutMs", 200L);
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.stop();
+    }
+
+    @Test
+    void rejectsUserOverTheirShareButAdmitsOthers() {
+        service.submit("alice", this::block, busy -> { });
+        service.submit("alice", this::block, busy -> { });
+
+        ServerBusyException rejected = assertThrows(ServerBusyException.class,
+                () -> service.submit("alice", this::block, busy -> { }));
+        assertTrue(rejected.getMessage().contains("2 questions in progress"));
+
+        assertDoesNotThrow(() -> service.submit("bob", this::block, busy -> { }));
+        assertThrows(ServerBusyException.class, () -> service.submit("carol", this::block, busy -> { }));
+    }
+
+    @Test
+    void rejectedSubmissionReleasesItsShare() {
+        service.stop();
+
+        assertThrows(ServerBusyException.class, () -> service.submit("alice", this::block, busy -> { }));
+        assertEquals(0, service.getPending());
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(service, "perUser")).isEmpty());
+    }
+
+    @Test
+    void waitingTaskGetsBusyMessageWhenNoSlotFreesUp() throws InterruptedException {
+        List<String> busyMessages = new CopyOnWriteArrayList<>();
+        CountDownLatch gaveUp = new CountDownLatch(1);
+
+        service.submit("alice", this::block, busy -> { });
+        service.submit("bob", () -> fail("should not run"), busy -> {
+            busyMessages.add(busy);
+            gaveUp.countDown();
+        });
+
+        assertTrue(gaveUp.await(5, TimeUnit.SECONDS));
+        assertEquals(1, busyMessages.size());
+        assertEquals(1, service.getActive());
+    }
+
+    @Test
+    void taskWaitingOnAnotherAnswerGivesUpItsSlot() throws InterruptedException {
+        CountDownLatch othersRan = new CountDownLatch(1);
+
+        service.submit("alice", () -> service.withoutLlmSlot(() -> {
+            block();
+            return null;
+        }), busy -> fail("slot should be free"));
+        service.submit("bob", othersRan::countDown, busy -> fail("slot should be free"));
+
+        assertTrue(othersRan.await(5, TimeUnit.SECONDS));
+        assertEquals(0, service.getActive());
+    }
+
+    @Test
+    void freedSlotGoesToTheNextUserInTurn() throws InterruptedException {
+        ReflectionTestUtils.setField(service, "maxPerUser", 3);
+        ReflectionTestUtils.setField(service, "maxPending", 4);
+        ReflectionTestUtils.setField(service, "permitTimeoutMs", 5000L);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch allRan = new CountDownLatch(3);
+
+        service.submit("alice", this::block, busy -> fail("slot should be free"));
+        for (String question : List.of("alice-2", "alice-3", "bob-1")) {
+            int waiting = service.getWaiting();
+            service.submit(question.substring(0, question.indexOf('-')), () -> {
+                order.add(question);
+                allRan.countDown();
+            }, busy -> fail("should get a slot"));
+            awaitWaiting(waiting + 1);
+        }
+        release.countDown();
+
+        assertTrue(allRan.await(5, TimeUnit.SECONDS));
+        // Bob is served before alice's second waiting question, not after all of hers
+        assertEquals(List.of("alice-2", "bob-1", "alice-3"), order);
+        assertEquals(0, service.getWaiting());
+    }
+
+    private void awaitWaiting(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.getWaiting() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, service.getWaiting());
+    }
+
+    private void block() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
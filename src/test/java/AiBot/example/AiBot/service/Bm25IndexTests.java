@@ -0,0 +1,48 @@
+package AiBot.example.AiBot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25IndexTests {
+
+    private final Bm25Index index = Bm25Index.build(List.of(
+            "Employees receive 24 days of annual leave per calendar year.",
+            "Salary is paid on the last working day of each month.",
+            "Unused annual leave can be carried over, up to 5 days.",
+            "The office is closed on public holidays."));
+
+    @Test
+    void ranksChunksByRelevance() {
+        List<Bm25Index.Hit> hits = index.search("How many days of annual leave per year?", 3);
+
+        assertEquals(List.of(0, 2), hits.stream().map(Bm25Index.Hit::chunk).toList());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void ignoresCaseAndPunctuationAndSkipsUnmatchedChunks() {
+        List<Bm25Index.Hit> hits = index.search("SALARY?!", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(1, hits.get(0).chunk());
+        assertTrue(index.search("what is the", 3).isEmpty());
+    }
+
+    @Test
+    void topKKeepsTheBestScoresInOrder() {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Chunk i mentions "policy" i times, so later chunks score higher
+            chunks.add("policy ".repeat(i) + "filler text " + i);
+        }
+        Bm25Index large = Bm25Index.build(chunks);
+
+        List<Bm25Index.Hit> hits = large.search("policy", 5);
+
+        assertEquals(List.of(199, 198, 197, 196, 195), hits.stream().map(Bm25Index.Hit::chunk).toList());
+    }
+}
@@ -0,0 +1,118 @@
+package AiBot.example.AiBot.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatCompletionClientTests {
+
+    private HttpServer server;
+    private ChatCompletionClient client;
+
+    // Released by the client's first delta; the stub holds back the rest of the stream until then
+    private final CountDownLatch firstDeltaReceived = new CountDownLatch(1);
+    private final AtomicBoolean deltaArrivedMidStream = new AtomicBoolean();
+    // Set to end the stream after the first delta, as a dropped connection would
+    private final AtomicBoolean cutOff = new AtomicBoolean();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (!body.contains("\"stream\":true")) {
+                byte[] response = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"24 days\"}}]}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+                return;
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            writeEvent(out, "{\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}");
+            writeEvent(out, "{\"choices\":[{\"delta\":{\"content\":\"You get \"}}]}");
+            if (cutOff.get()) {
+                exchange.close();
+                return;
+            }
+            try {
+                deltaArrivedMidStream.set(firstDeltaReceived.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeEvent(out, "{\"choices\":[{\"delta\":{\"content\":\"24 days\"}}]}");
+            writeEvent(out, "{\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}]}");
+            writeEvent(out, "[DONE]");
+            exchange.close();
+        });
+        server.start();
+
+        client = new ChatCompletionClient();
+        ReflectionTestUtils.setField(client, "llmHttpClient", LlmHttpClientTests.clientFor(server));
+        ReflectionTestUtils.setField(client, "model", "gpt-4o-mini");
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void streamsDeltasBeforeTheCompletionFinishes() {
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        String answer = client.stream(messages(), 100, 0.3, delta -> {
+            deltas.add(delta);
+            firstDeltaReceived.countDown();
+        });
+
+        assertTrue(deltaArrivedMidStream.get());
+        assertEquals(List.of("You get ", "24 days"), deltas);
+        assertEquals("You get 24 days", answer);
+    }
+
+    @Test
+    void streamEndingBeforeDoneIsAnError() {
+        cutOff.set(true);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> client.stream(messages(), 100, 0.3, deltas::add));
+
+        assertTrue(e.getMessage().contains("[DONE]"), e.getMessage());
+        assertEquals(List.of("You get "), deltas);
+    }
+
+    @Test
+    void completeReturnsWholeAnswer() {
+        assertEquals("24 days", client.complete(messages(), 100, 0.3));
+    }
+
+    private static List<Map<String, Object>> messages() {
+        return List.of(Map.of("role", "user", "content", "How many annual leaves do I get?"));
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
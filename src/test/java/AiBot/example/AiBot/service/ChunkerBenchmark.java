@@ -0,0 +1,130 @@
+package AiBot.example.AiBot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of chunking a multi-megabyte document.
+ *
+ * The legacy path mirrors the old VectorRagService.chunkDocument: split("\n\n"), then a lookbehind
+ * regex sentence split for paragraphs over 1000 characters, joined back with a StringBuilder. The
+ * token paths run TokenChunker at the default budget, once on one thread and once with fork-join
+ * tasks over 256KB paragraph-aligned ranges.
+ *
+ * Run with allocation stats from the project root:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) AiBot.example.AiBot.service.ChunkerBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChunkerBenchmark {
+
+    @Param({"4194304", "16777216"})
+    public int corpusChars;
+
+    private String corpus;
+    private final TokenChunker sequential = new TokenChunker(256, 32, Integer.MAX_VALUE);
+    private final TokenChunker parallel = new TokenChunker(256, 32, 256 * 1024);
+
+    @Setup
+    public void setUp() {
+        // Policy-manual-like text: mostly short paragraphs, some long ones that need sentence splits
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(corpusChars + 4096);
+        while (text.length() < corpusChars) {
+            int sentences = random.nextInt(10) < 7 ? 1 + random.nextInt(4) : 10 + random.nextInt(30);
+            for (int s = 0; s < sentences; s++) {
+                int words = 6 + random.nextInt(20);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) {
+                        text.append(' ');
+                    }
+                    text.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                text.append(". ");
+            }
+            text.append("\n\n");
+        }
+        corpus = text.toString();
+    }
+
+    @Benchmark
+    public List<String> legacyRegexChunker() {
+        return legacyChunkDocument(corpus);
+    }
+
+    @Benchmark
+    public List<String> tokenChunkerSequential() {
+        return sequential.chunk(corpus);
+    }
+
+    @Benchmark
+    public List<String> tokenChunkerParallel() {
+        return parallel.chunk(corpus);
+    }
+
+    private static List<String> legacyChunkDocument(String content) {
+        String[] paragraphs = content.split("\n\n");
+        List<String> chunks = new ArrayList<>();
+        for (String paragraph : paragraphs) {
+            paragraph = paragraph.trim();
+            if (!paragraph.isEmpty()) {
+                if (paragraph.length() > 1000) {
+                    chunks.addAll(legacySplitLongParagraph(paragraph));
+                } else {
+                    chunks.add(paragraph);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private static List<String> legacySplitLongParagraph(String paragraph) {
+        List<String> chunks = new ArrayList<>();
+        String[] sentences = paragraph.split("(?<=[.!?])\\s+");
+        StringBuilder currentChunk = new StringBuilder();
+        for (String sentence : sentences) {
+            if (currentChunk.length() + sentence.length() > 1000) {
+                if (currentChunk.length() > 0) {
+                    chunks.add(currentChunk.toString().trim());
+                    currentChunk = new StringBuilder();
+                }
+            }
+            currentChunk.append(sentence).append(" ");
+        }
+        if (currentChunk.length() > 0) {
+            chunks.add(currentChunk.toString().trim());
+        }
+        return chunks;
+    }
+
+    private static final String[] WORDS = {
+            "employee", "leave", "annual", "policy", "the", "of", "and", "manager", "approval", "request",
+            "salary", "payment", "monthly", "benefits", "insurance", "holiday", "working", "hours", "remote",
+            "office", "equipment", "expenses", "reimbursement", "within", "days", "must", "be", "submitted",
+            "training", "performance", "review", "quarterly", "contract", "notice", "period", "termination"
+    };
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ChunkerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
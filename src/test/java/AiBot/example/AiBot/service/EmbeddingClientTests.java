@@ -0,0 +1,125 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingClientTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer server;
+    private EmbeddingClient client;
+
+    // Batch sizes received by the stub, and the first input of each request
+    private final List<Integer> requestSizes = new CopyOnWriteArrayList<>();
+    private final List<String> firstInputs = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean failBatchStartingAtText4 = new AtomicBoolean();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/embeddings", exchange -> {
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            List<String> inputs = new ArrayList<>();
+            body.get("input").forEach(node -> inputs.add(node.asText()));
+            requestSizes.add(inputs.size());
+            firstInputs.add(inputs.get(0));
+
+            byte[] response;
+            int status;
+            if (inputs.get(0).equals("text-4") && failBatchStartingAtText4.getAndSet(false)) {
+                status = 500;
+                response = "{\"error\":\"boom\"}".getBytes(StandardCharsets.UTF_8);
+            } else {
+                status = 200;
+                response = embeddingsResponse(inputs);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+
+        client = new EmbeddingClient();
+        ReflectionTestUtils.setField(client, "llmHttpClient", LlmHttpClientTests.clientFor(server));
+        ReflectionTestUtils.setField(client, "model", "text-embedding-3-small");
+        ReflectionTestUtils.setField(client, "maxInputsPerRequest", 4);
+        ReflectionTestUtils.setField(client, "maxTokensPerRequest", 1000);
+        ReflectionTestUtils.setField(client, "maxAttempts", 3);
+        ReflectionTestUtils.setField(client, "retryBackoffMs", 1L);
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void packsInputsIntoBatchesAndKeepsOrder() {
+        List<String> texts = texts(10);
+
+        List<Embedding> embeddings = client.embedAll(texts);
+
+        assertEquals(List.of(4, 4, 2), requestSizes);
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(i, embeddings.get(i).get(0));
+        }
+    }
+
+    @Test
+    void retriesOnlyTheFailedBatch() {
+        failBatchStartingAtText4.set(true);
+
+        List<Embedding> embeddings = client.embedAll(texts(10));
+
+        assertEquals(List.of("text-0", "text-4", "text-8", "text-4"), firstInputs);
+        assertEquals(10, embeddings.size());
+        assertEquals(5, embeddings.get(5).get(0));
+    }
+
+    @Test
+    void splitsBatchesOnTokenBudget() {
+        ReflectionTestUtils.setField(client, "maxTokensPerRequest", 500);
+        List<String> texts = List.of("a".repeat(1200), "b".repeat(1200), "c");
+
+        List<EmbeddingClient.Batch> batches = client.partition(texts);
+
+        assertEquals(List.of(new EmbeddingClient.Batch(0, 1), new EmbeddingClient.Batch(1, 3)), batches);
+    }
+
+    private static List<String> texts(int count) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            texts.add("text-" + i);
+        }
+        return texts;
+    }
+
+    /**
+     * Builds a response whose data array is reversed, with each vector encoding its input number
+     */
+    private byte[] embeddingsResponse(List<String> inputs) throws IOException {
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int i = inputs.size() - 1; i >= 0; i--) {
+            int number = Integer.parseInt(inputs.get(i).substring("text-".length()));
+            data.add(Map.of("object", "embedding", "index", i, "embedding", List.of((double) number, 0.5)));
+        }
+        return objectMapper.writeValueAsBytes(Map.of("object", "list", "data", data));
+    }
+}
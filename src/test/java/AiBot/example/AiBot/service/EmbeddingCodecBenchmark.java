@@ -0,0 +1,98 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-query cost of turning an embeddings response into a pgvector query parameter.
+ *
+ * The legacy path mirrors the old code: Map-based JSON binding into List&lt;Double&gt;, a stream
+ * into Float[], and the element-wise array literal PgJDBC builds for createArrayOf (done twice,
+ * since the similarity query bound the vector twice). The primitive path uses the streaming
+ * parser and Embedding's text codec.
+ *
+ * Run with allocation stats from the project root:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) AiBot.example.AiBot.service.EmbeddingCodecBenchmark
+ * </pre>
+ * Compare the gc.alloc.rate.norm (bytes/op) column of the two benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmbeddingCodecBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] responseBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        double[] vector = new double[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = random.nextGaussian() * 0.05;
+        }
+        responseBody = objectMapper.writeValueAsBytes(Map.of(
+                "object", "list",
+                "model", "text-embedding-3-small",
+                "data", List.of(Map.of("object", "embedding", "index", 0, "embedding", vector))));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public String legacyBoxedPath() throws IOException {
+        Map<String, Object> response = objectMapper.readValue(responseBody, Map.class);
+        List<Map<String, Object>> data = (List<Map<String, Object>>) response.get("data");
+        List<Double> embedding = (List<Double>) data.get(0).get("embedding");
+
+        Float[] embeddingArray = embedding.stream()
+                .map(Double::floatValue)
+                .toArray(Float[]::new);
+
+        String literal = null;
+        for (int bind = 0; bind < 2; bind++) {
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < embeddingArray.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(embeddingArray[i].toString());
+            }
+            literal = sb.append('}').toString();
+        }
+        return literal;
+    }
+
+    @Benchmark
+    public String primitivePath() throws IOException {
+        Embedding embedding = EmbeddingClient.readEmbeddings(new ByteArrayInputStream(responseBody), 1).get(0);
+        return embedding.toVectorLiteral();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EmbeddingCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,73 @@
+package AiBot.example.AiBot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FallbackRagServiceTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void chunkSegmentsRoundTripUtf8() throws Exception {
+        Path file = directory.resolve("1.chunks");
+        List<String> chunks = List.of("Annual leave: 24 days.", "", "Überstunden – café ☕");
+        ChunkSegment.write(file, chunks);
+
+        ChunkSegment segment = ChunkSegment.open(file);
+        assertEquals(chunks, segment);
+        assertThrows(IndexOutOfBoundsException.class, () -> segment.get(3));
+    }
+
+    @Test
+    void storedDocumentsAreAnsweredAfterRestart() {
+        FallbackRagService service = newService();
+        service.processDocument("Employees receive 24 days of annual leave.\n\nSalary is paid monthly.", "7");
+
+        FallbackRagService restarted = newService();
+        String answer = restarted.askQuestion("When is salary paid?", "7", 1);
+
+        assertTrue(answer.contains("Salary is paid monthly."));
+        assertFalse(answer.contains("annual leave"));
+        assertEquals("Document not found.", restarted.askQuestion("anything", "8"));
+        assertEquals(1, restarted.askAcrossDocuments("annual leave", null, 3).sources().size());
+    }
+
+    @Test
+    void questionsAcrossAllDocumentsUseOneCorpusIndex() {
+        FallbackRagService service = newService();
+        service.processDocument("Offices close at 6pm.\n\nParking is free for staff.", "1");
+        service.processDocument("", "2");
+        service.processDocument("Expenses are approved by your manager.\n\nParking costs are not refunded.", "3");
+
+        List<RetrievedChunk> sources = service.askAcrossDocuments("parking refunded", null, 3).sources();
+        assertEquals(2, sources.size());
+        assertEquals("3", sources.get(0).documentId());
+        assertTrue(sources.get(0).text().contains("Parking costs are not refunded."));
+        assertEquals("1", sources.get(1).documentId());
+        assertTrue(sources.get(1).text().contains("Parking is free for staff."));
+        assertTrue(sources.stream().allMatch(source -> source.chunkId() == -1));
+
+        // A newly stored document is searched by the next question
+        service.processDocument("Parking permits are refunded when you leave.", "4");
+        assertEquals("4", service.askAcrossDocuments("parking permits refunded", null, 1).sources().get(0).documentId());
+    }
+
+    private FallbackRagService newService() {
+        FallbackRagService service = new FallbackRagService();
+        ReflectionTestUtils.setField(service, "topK", 3);
+        ReflectionTestUtils.setField(service, "maxIndexedDocuments", 2);
+        ReflectionTestUtils.setField(service, "storePath", directory.toString());
+        ChunkingSettings chunkingSettings = new ChunkingSettings();
+        ReflectionTestUtils.setField(chunkingSettings, "fallbackChunker", new TokenChunker(128, 16, 1 << 20));
+        ReflectionTestUtils.setField(service, "chunkingSettings", chunkingSettings);
+        service.openStore();
+        return service;
+    }
+}
@@ -0,0 +1,47 @@
+package AiBot.example.AiBot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUtilTests {
+
+    @TempDir
+    Path directory;
+
+    private final FileUtil fileUtil = new FileUtil();
+
+    @Test
+    void savedUploadIsHashedInTheSamePass() throws Exception {
+        byte[] bytes = "Employees receive 24 days of annual leave.".getBytes(StandardCharsets.UTF_8);
+        MockMultipartFile upload = new MockMultipartFile("file", "handbook.txt", "text/plain", bytes);
+
+        FileUtil.StoredFile stored = fileUtil.saveFile(upload, directory.resolve("uploads").toString());
+
+        assertTrue(stored.path().endsWith(".txt"));
+        assertArrayEquals(bytes, Files.readAllBytes(Path.of(stored.path())));
+        assertEquals(bytes.length, stored.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)), stored.sha256());
+    }
+
+    @Test
+    void mappedDecodingHandlesCharactersAcrossWindowsAndMalformedBytes() throws Exception {
+        // The 16 MiB window boundary falls inside a two-byte character
+        String text = "a" + "é".repeat(8 * 1024 * 1024 + 10);
+        Path file = directory.resolve("large.txt");
+        Files.writeString(file, text);
+        assertEquals(text, fileUtil.extractTextContent(file.toString(), "large.txt"));
+
+        Path malformed = directory.resolve("bad.txt");
+        Files.write(malformed, new byte[]{'o', 'k', (byte) 0xFF, '!'});
+        assertEquals("ok�!", fileUtil.readTextFile(malformed.toString()));
+    }
+}
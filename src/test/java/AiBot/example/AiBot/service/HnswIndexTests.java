@@ -0,0 +1,220 @@
+package AiBot.example.AiBot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTests {
+
+    private static final int DIMENSIONS = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentInsertsKeepRecallCloseToExactSearch() throws Exception {
+        Random random = new Random(42);
+        float[][] vectors = new float[2000][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random);
+        }
+
+        // Small segments so the index spans several mapped files
+        try (HnswIndex index = HnswIndex.open(directory, 16, 100, 512)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Integer>> inserts = new ArrayList<>();
+            for (int i = 0; i < vectors.length; i++) {
+                int chunk = i;
+                inserts.add(executor.submit(() -> add(index, "doc-" + (chunk % 10), chunk, "chunk " + chunk, vectors[chunk])));
+            }
+            for (Future<Integer> insert : inserts) {
+                insert.get();
+            }
+            executor.shutdown();
+
+            int found = 0;
+            for (int q = 0; q < 50; q++) {
+                float[] query = randomVector(random);
+                Set<Integer> expected = new HashSet<>(exactTopK(vectors, query, 10));
+                for (HnswIndex.Result result : index.search(query, 10, 64, null)) {
+                    if (expected.contains(result.chunkIndex())) {
+                        found++;
+                    }
+                }
+            }
+            assertTrue(found / 500.0 >= 0.9, "recall@10 was " + found / 500.0);
+        }
+    }
+
+    @Test
+    void deletedDocumentsAndFiltersAreRespected() throws Exception {
+        Random random = new Random(7);
+        try (HnswIndex index = HnswIndex.open(directory, 8, 50, 1024)) {
+            for (int i = 0; i < 300; i++) {
+                add(index, i < 150 ? "a" : "b", i, "chunk " + i, randomVector(random));
+            }
+
+            assertEquals(150, index.deleteDocument("a"));
+            assertEquals(150, index.liveSize());
+
+            float[] query = randomVector(random);
+            assertTrue(index.search(query, 20, 16, null).stream().allMatch(r -> r.documentId().equals("b")));
+            assertEquals(20, index.search(query, 20, 16, null).size());
+            assertTrue(index.search(query, 5, 16, List.of("a")).isEmpty());
+            assertEquals(5, index.search(query, 5, 16, List.of("b")).size());
+        }
+    }
+
+    @Test
+    void reopeningRestoresVectorsTextAndTombstones() throws Exception {
+        Random random = new Random(3);
+        float[][] vectors = IntStream.range(0, 100).mapToObj(i -> randomVector(random)).toArray(float[][]::new);
+
+        try (HnswIndex index = HnswIndex.open(directory, 8, 50, 64)) {
+            for (int i = 0; i < vectors.length; i++) {
+                add(index, i % 2 == 0 ? "even" : "odd", i, "text of chunk " + i + " – ünïcode", vectors[i]);
+            }
+            index.deleteDocument("odd");
+            index.flush();
+        }
+
+        try (HnswIndex reopened = HnswIndex.open(directory, 16, 50, 1024)) {
+            assertEquals(100, reopened.size());
+            assertEquals(50, reopened.liveSize());
+
+            HnswIndex.Result best = reopened.search(vectors[42], 1, 16, null).get(0);
+            assertEquals(42, best.chunkIndex());
+            assertEquals(1.0, best.score(), 1e-5);
+            assertEquals("text of chunk 42 – ünïcode", reopened.text(best.node()));
+            assertTrue(reopened.search(vectors[43], 3, 16, List.of("odd")).isEmpty());
+            assertNotNull(reopened.vectorForChunk(EmbeddingCache.hash("text of chunk 42 – ünïcode")));
+            assertNull(reopened.vectorForChunk(EmbeddingCache.hash("text of chunk 43 – ünïcode")));
+
+            // Appends after reopening continue the text file and segments
+            int node = add(reopened, "odd", 0, "new chunk", vectors[43]);
+            assertEquals("new chunk", reopened.text(node));
+            assertEquals(node, reopened.search(vectors[43], 1, 16, List.of("odd")).get(0).node());
+        }
+    }
+
+    @Test
+    void changesAfterTheSnapshotAreReplayedFromTheLog() throws Exception {
+        Random random = new Random(11);
+        float[][] vectors = IntStream.range(0, 4).mapToObj(i -> randomVector(random)).toArray(float[][]::new);
+
+        try (HnswIndex index = HnswIndex.open(directory, 8, 50, 64)) {
+            replace(index, "a", List.of("a0", "a1"), List.of(vectors[0], vectors[1]));
+            index.flush();
+            replace(index, "b", List.of("b0", "b1"), List.of(vectors[2], vectors[3]));
+            index.deleteDocument("a");
+            replace(index, "b", List.of("b1", "b0"), Arrays.asList(null, null));
+            assertTrue(index.logBytes() > 0);
+            // Closed without a snapshot, as in a crash
+        }
+        // A record torn by the crash is ignored
+        Files.write(directory.resolve("changes.log"), new byte[] {0, 0, 1, 0, 7}, StandardOpenOption.APPEND);
+
+        try (HnswIndex reopened = HnswIndex.open(directory, 8, 50, 64)) {
+            assertEquals(2, reopened.liveSize());
+            assertEquals(0, reopened.logBytes());
+            HnswIndex.Result best = reopened.search(vectors[2], 1, 16, null).get(0);
+            assertEquals("b0", reopened.text(best.node()));
+            assertEquals(1, best.chunkIndex());
+            assertTrue(reopened.search(vectors[0], 3, 16, List.of("a")).isEmpty());
+        }
+    }
+
+    @Test
+    void replaceMissingAVectorChangesNothing() throws Exception {
+        Random random = new Random(13);
+        float[][] vectors = IntStream.range(0, 2).mapToObj(i -> randomVector(random)).toArray(float[][]::new);
+
+        try (HnswIndex index = HnswIndex.open(directory, 8, 50, 64)) {
+            replace(index, "a", List.of("a0", "a1"), List.of(vectors[0], vectors[1]));
+            long logBytes = index.logBytes();
+
+            // a1 moves to the front and keeps its node, but the new chunk has no vector
+            assertThrows(IllegalStateException.class,
+                    () -> replace(index, "a", List.of("a1", "new"), Arrays.asList(null, null)));
+
+            assertEquals(2, index.size());
+            assertEquals(2, index.liveSize());
+            assertEquals(logBytes, index.logBytes());
+            assertEquals(1, index.search(vectors[1], 1, 16, null).get(0).chunkIndex());
+        }
+    }
+
+    @Test
+    void compactionDropsDeletedChunks() throws Exception {
+        Random random = new Random(5);
+        float[][] vectors = IntStream.range(0, 100).mapToObj(i -> randomVector(random)).toArray(float[][]::new);
+
+        HnswIndex index = HnswIndex.open(directory, 8, 50, 64);
+        for (int i = 0; i < vectors.length; i++) {
+            add(index, i % 2 == 0 ? "even" : "odd", i, "chunk " + i, vectors[i]);
+        }
+        index.deleteDocument("odd");
+        index.flush();
+
+        try (HnswIndex compacted = index.compact()) {
+            assertEquals(50, compacted.size());
+            assertEquals(50, compacted.liveSize());
+            HnswIndex.Result best = compacted.search(vectors[42], 1, 16, null).get(0);
+            assertEquals(42, best.chunkIndex());
+            assertEquals("chunk 42", compacted.text(best.node()));
+            assertNull(compacted.vectorForChunk(EmbeddingCache.hash("chunk 43")));
+        }
+        assertFalse(Files.exists(directory.resolveSibling(directory.getFileName() + ".old")));
+        assertFalse(Files.exists(directory.resolveSibling(directory.getFileName() + ".compact")));
+
+        try (HnswIndex reopened = HnswIndex.open(directory, 8, 50, 64)) {
+            assertEquals(50, reopened.size());
+            assertEquals(0, reopened.search(vectors[43], 5, 16, null).stream()
+                    .filter(result -> result.documentId().equals("odd")).count());
+        }
+    }
+
+    private static int add(HnswIndex index, String documentId, int chunkIndex, String text, float[] vector) throws IOException {
+        return index.add(documentId, chunkIndex, text, EmbeddingCache.hash(text), vector);
+    }
+
+    private static ChunkChanges replace(HnswIndex index, String documentId, List<String> texts,
+                                        List<float[]> vectors) throws IOException {
+        return index.replaceDocument(documentId, texts, EmbeddingCache.hashAll(texts), vectors);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Integer> exactTopK(float[][] vectors, float[] query, int k) {
+        float[] q = HnswIndex.normalize(query);
+        return IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> -dot(q, HnswIndex.normalize(vectors[i]))))
+                .limit(k)
+                .toList();
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,58 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.IngestionJob;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionServiceTests {
+
+    private final IngestionService service = new IngestionService();
+
+    @Test
+    void onlyOneConcurrentClaimPerDocumentSucceeds() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<IngestionJob>> claims = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            claims.add(callers.submit(() -> {
+                start.await();
+                return service.reserve(7L);
+            }));
+        }
+        start.countDown();
+
+        int granted = 0;
+        for (Future<IngestionJob> claim : claims) {
+            try {
+                claim.get();
+                granted++;
+            } catch (Exception e) {
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        }
+        callers.shutdown();
+        assertEquals(1, granted);
+    }
+
+    @Test
+    void claimIsFreeAgainOnceFinishedOrReleased() {
+        IngestionJob first = service.reserve(7L);
+        assertThrows(IllegalStateException.class, () -> service.reserve(7L));
+
+        first.setStatus(IngestionJob.READY);
+        IngestionJob second = service.reserve(7L);
+        assertNotSame(first, second);
+
+        service.release(second);
+        assertTrue(service.getJob(7L).isEmpty());
+        assertDoesNotThrow(() -> service.reserve(7L));
+    }
+}
@@ -0,0 +1,154 @@
+package AiBot.example.AiBot.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmHttpClientTests {
+
+    private HttpServer server;
+    private LlmHttpClient client;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/gzip", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            boolean acceptsGzip = "gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            byte[] response = gzip("{\"ok\":true}");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(acceptsGzip ? 200 : 400, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.createContext("/v1/broken", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] response = "{\"error\":\"rate limited\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(429, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.createContext("/v1/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        // Headers and the start of the body arrive quickly, then the server stalls
+        server.createContext("/v1/stalled", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write("data: {\"partial\"".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            try {
+                Thread.sleep(1500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+
+        client = clientFor(server);
+        ReflectionTestUtils.setField(client, "responseTimeoutMs", 300L);
+        meterRegistry = (MeterRegistry) ReflectionTestUtils.getField(client, "meterRegistry");
+    }
+
+    @AfterEach
+    void stopStub() {
+        client.stop();
+        server.stop(0);
+    }
+
+    @Test
+    void decodesGzipAndRecordsLatencyPerEndpoint() {
+        String body = client.postJson("/v1/gzip", Map.of("input", "x"),
+                in -> new String(in.readAllBytes(), StandardCharsets.UTF_8));
+
+        assertEquals("{\"ok\":true}", body);
+        Timer timer = meterRegistry.find("llm.http.requests").tag("endpoint", "/v1/gzip").tag("status", "200").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    void errorStatusIsThrownWithBody() {
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> client.postJson("/v1/broken", Map.of(), in -> in.readAllBytes()));
+
+        assertTrue(error.getMessage().contains("HTTP 429"));
+        assertTrue(error.getMessage().contains("rate limited"));
+    }
+
+    @Test
+    void slowResponseTimesOutInsteadOfHanging() {
+        UncheckedIOException error = assertThrows(UncheckedIOException.class,
+                () -> client.postJson("/v1/slow", Map.of(), in -> in.readAllBytes()));
+
+        assertInstanceOf(HttpTimeoutException.class, error.getCause());
+    }
+
+    @Test
+    void stalledBodyTimesOutInsteadOfHanging() {
+        long start = System.nanoTime();
+        UncheckedIOException error = assertThrows(UncheckedIOException.class,
+                () -> client.postJson("/v1/stalled", Map.of(), in -> in.readAllBytes()));
+
+        assertInstanceOf(HttpTimeoutException.class, error.getCause());
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    }
+
+    @Test
+    void stalledEventStreamTimesOutWhenIdle() {
+        ReflectionTestUtils.setField(client, "streamIdleTimeoutMs", 300L);
+        long start = System.nanoTime();
+        UncheckedIOException error = assertThrows(UncheckedIOException.class,
+                () -> client.postForEventStream("/v1/stalled", Map.of(), in -> in.readAllBytes()));
+
+        assertInstanceOf(HttpTimeoutException.class, error.getCause());
+        assertTrue(error.getMessage().contains("no data received"));
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    }
+
+    /**
+     * A started client pointed at a local stub server
+     */
+    static LlmHttpClient clientFor(HttpServer server) {
+        LlmHttpClient client = new LlmHttpClient();
+        ReflectionTestUtils.setField(client, "openaiApiKey", "test-key");
+        ReflectionTestUtils.setField(client, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(client, "responseTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(client, "streamIdleTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(client, "meterRegistry", new SimpleMeterRegistry());
+        client.start();
+        return client;
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package AiBot.example.AiBot.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfTextExtractorTests {
+
+    @TempDir
+    Path directory;
+
+    private final PdfTextExtractor extractor = new PdfTextExtractor();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(extractor, "pagesPerTask", 3);
+        ReflectionTestUtils.setField(extractor, "threads", 4);
+        ReflectionTestUtils.setField(extractor, "maxMainMemoryBytes", 1024L * 1024);
+        extractor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        extractor.stop();
+    }
+
+    @Test
+    void pagesAreEmittedInOrderAndMatchSequentialExtraction() throws Exception {
+        File pdf = writePdf(40);
+
+        List<String> pages = new ArrayList<>();
+        extractor.extractPages(pdf.toPath(), pages::add);
+
+        assertEquals(40, pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            assertTrue(pages.get(i).contains("Page " + (i + 1) + " text"), pages.get(i));
+        }
+        try (PDDocument document = PDDocument.load(pdf)) {
+            assertEquals(new PDFTextStripper().getText(document), String.join("", pages));
+        }
+    }
+
+    @Test
+    void streamedChunksMatchChunkingTheWholeText() {
+        Chunker chunker = new TokenChunker(4, 1, 1 << 20);
+        List<String> pieces = List.of("Intro para", "graph. It has two sentences.\n\nSecond paragraph\n",
+                " \nThird\n\n\n", "Last one.");
+
+        ParagraphChunkStream stream = new ParagraphChunkStream(chunker);
+        pieces.forEach(stream::accept);
+
+        assertEquals(chunker.chunk(String.join("", pieces)), stream.finish());
+    }
+
+    private File writePdf(int pageCount) throws Exception {
+        File file = directory.resolve("manual.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= pageCount; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + i + " text");
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
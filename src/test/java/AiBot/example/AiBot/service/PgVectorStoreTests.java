@@ -0,0 +1,47 @@
+package AiBot.example.AiBot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgVectorStoreTests {
+
+    @Test
+    void fusionFavoursChunksRankedByBothLegs() {
+        List<RetrievedChunk> vector = List.of(chunk(1), chunk(2), chunk(3));
+        List<RetrievedChunk> text = List.of(chunk(3), chunk(4));
+
+        List<RetrievedChunk> fused = PgVectorStore.fuse(vector, 1.0, text, 1.0, 3, 60);
+
+        assertEquals(List.of(3L, 1L, 2L), fused.stream().map(RetrievedChunk::chunkId).toList());
+    }
+
+    @Test
+    void weightsShiftTheRankingAndMissingLegIsIgnored() {
+        List<RetrievedChunk> vector = List.of(chunk(1), chunk(2));
+        List<RetrievedChunk> text = List.of(chunk(2), chunk(1));
+
+        assertEquals(1L, PgVectorStore.fuse(vector, 2.0, text, 1.0, 1, 60).get(0).chunkId());
+        assertEquals(2L, PgVectorStore.fuse(vector, 1.0, text, 2.0, 1, 60).get(0).chunkId());
+        assertEquals(List.of(2L, 1L),
+                PgVectorStore.fuse(null, 1.0, text, 1.0, 5, 60).stream().map(RetrievedChunk::chunkId).toList());
+    }
+
+    @Test
+    void requestOverridesAreValidated() {
+        RetrievalOptions defaults = new RetrievalOptions(RetrievalOptions.HYBRID, 3, 1.0, 1.0);
+
+        RetrievalOptions options = defaults.withOverrides(Map.of("topK", 8, "textWeight", "0.5"));
+        assertEquals(new RetrievalOptions(RetrievalOptions.HYBRID, 8, 1.0, 0.5), options);
+
+        assertThrows(IllegalArgumentException.class, () -> defaults.withOverrides(Map.of("topK", 0)));
+        assertThrows(IllegalArgumentException.class, () -> defaults.withOverrides(Map.of("retrievalMode", "fuzzy")));
+    }
+
+    private static RetrievedChunk chunk(long id) {
+        return new RetrievedChunk(id, "1", (int) id, "chunk " + id, 0);
+    }
+}
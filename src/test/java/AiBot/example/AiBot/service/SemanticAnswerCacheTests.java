@@ -0,0 +1,102 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticAnswerCacheTests {
+
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SemanticAnswerCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.9);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "maxEntriesPerDocument", 2);
+        ReflectionTestUtils.setField(cache, "maxDocuments", 10);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.registerMetrics();
+    }
+
+    @Test
+    void closeParaphraseHitsButUnrelatedQuestionMisses() {
+        cache.put("1", cache.generation("1"), vector(1, 0, 0), "24 days");
+
+        // Scaled and slightly rotated: cosine ~0.995
+        assertEquals("24 days", cache.get("1", vector(2, 0.2f, 0)));
+        assertNull(cache.get("1", vector(0, 1, 0)));
+        assertEquals(0.5, cache.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void answersAreScopedToTheirDocumentAndInvalidated() {
+        cache.put("1", cache.generation("1"), vector(1, 0, 0), "24 days");
+
+        assertNull(cache.get("2", vector(1, 0, 0)));
+
+        cache.invalidate("1");
+        assertNull(cache.get("1", vector(1, 0, 0)));
+    }
+
+    @Test
+    void answerComputedBeforeInvalidationIsDropped() {
+        long generation = cache.generation("1");
+        cache.invalidate("1");
+        cache.put("1", generation, vector(1, 0, 0), "24 days");
+        assertNull(cache.get("1", vector(1, 0, 0)));
+
+        generation = cache.generation("1");
+        cache.clear();
+        cache.put("1", generation, vector(1, 0, 0), "24 days");
+        assertNull(cache.get("1", vector(1, 0, 0)));
+
+        // Another document's invalidation does not affect this one
+        generation = cache.generation("1");
+        cache.invalidate("2");
+        cache.put("1", generation, vector(1, 0, 0), "24 days");
+        assertEquals("24 days", cache.get("1", vector(1, 0, 0)));
+    }
+
+    @Test
+    void blankAnswersAreNotCached() {
+        cache.put("1", cache.generation("1"), vector(1, 0, 0), null);
+        cache.put("1", cache.generation("1"), vector(0, 1, 0), "  ");
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void expiredAnswersAreNotReturned() {
+        ReflectionTestUtils.setField(cache, "ttlMinutes", -1L);
+        cache.put("1", cache.generation("1"), vector(1, 0, 0), "24 days");
+
+        assertNull(cache.get("1", vector(1, 0, 0)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAnswerPerDocument() throws InterruptedException {
+        cache.put("1", cache.generation("1"), vector(1, 0, 0), "leave");
+        Thread.sleep(5);
+        cache.put("1", cache.generation("1"), vector(0, 1, 0), "salary");
+        Thread.sleep(5);
+        cache.get("1", vector(1, 0, 0));
+        Thread.sleep(5);
+
+        cache.put("1", cache.generation("1"), vector(0, 0, 1), "holidays");
+
+        assertEquals(2, cache.size());
+        assertEquals("leave", cache.get("1", vector(1, 0, 0)));
+        assertNull(cache.get("1", vector(0, 1, 0)));
+    }
+
+    private static Embedding vector(float... values) {
+        return new Embedding(values);
+    }
+}
@@ -0,0 +1,120 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.SummaryJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SummaryServiceTests {
+
+    private static final Pattern PART = Pattern.compile("This is part (\\d+) of (\\d+)");
+
+    private final SummaryService service = new SummaryService();
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private String combinedSummary = "The whole policy in brief.";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "chatCompletionClient", new ChatCompletionClient() {
+            @Override
+            public String complete(List<Map<String, Object>> messages, int maxTokens, double temperature) {
+                String prompt = (String) messages.get(messages.size() - 1).get("content");
+                prompts.add(prompt);
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                Matcher part = PART.matcher(prompt);
+                return part.find() ? "Summary of part " + part.group(1) + "." : combinedSummary;
+            }
+        });
+        ReflectionTestUtils.setField(service, "messagingTemplate", new SimpMessagingTemplate((message, timeout) -> true));
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "workers", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 10);
+        ReflectionTestUtils.setField(service, "mapParallelism", 4);
+        ReflectionTestUtils.setField(service, "sectionTokens", 500);
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void shortDocumentsAreSummarizedInOneCall() {
+        SummaryJob job = new SummaryJob(1L);
+
+        String summary = service.summarize("Leave is 24 days.\n\nSalary is paid monthly.", job);
+
+        assertEquals(combinedSummary, summary);
+        assertEquals(1, prompts.size());
+        assertTrue(prompts.get(0).contains("Salary is paid monthly."));
+        assertEquals(90, job.getProgress());
+    }
+
+    @Test
+    void longDocumentsAreSummarizedSectionBySectionInParallel() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            content.append("Paragraph ").append(i).append(" says: ")
+                    .append("employees must submit expense reports within thirty days. ".repeat(8))
+                    .append("\n\n");
+        }
+        SummaryJob job = new SummaryJob(1L);
+
+        String summary = service.summarize(content.toString(), job);
+
+        assertEquals(combinedSummary, summary);
+        int sections = job.getSectionsTotal();
+        assertTrue(sections > 4, "sections: " + sections);
+        assertEquals(sections, job.getSectionsDone());
+        // One call per section plus the final combine, and every paragraph reached a section prompt
+        assertEquals(sections + 1, prompts.size());
+        for (int i = 0; i < 40; i++) {
+            String marker = "Paragraph " + i + " says";
+            assertTrue(prompts.stream().anyMatch(p -> p.contains(marker)), marker);
+        }
+        assertTrue(prompts.get(prompts.size() - 1).contains("Summary of part " + sections + "."));
+        assertTrue(maxInFlight.get() > 1);
+    }
+
+    @Test
+    void sectionSummariesThatDontFitOnePromptAreCombinedInRounds() {
+        combinedSummary = "Combined summary covering several parts of the policy. ".repeat(5);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            content.append("Section ").append(i).append(" of the handbook. ")
+                    .append("Overtime is paid at one and a half times the hourly rate. ".repeat(10))
+                    .append("\n\n");
+        }
+        ReflectionTestUtils.setField(service, "sectionTokens", 120);
+        service.stop();
+        service.start();
+
+        String summary = service.summarize(content.toString(), new SummaryJob(1L));
+
+        assertEquals(combinedSummary.trim(), summary);
+        long combineCalls = prompts.stream().filter(p -> p.startsWith("These are summaries")).count();
+        assertTrue(combineCalls > 2, "combine calls: " + combineCalls);
+    }
+}
@@ -0,0 +1,84 @@
+package AiBot.example.AiBot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenChunkerTests {
+
+    @Test
+    void paragraphsWithinBudgetAreKeptWholeAndSeparate() {
+        Chunker chunker = new TokenChunker(256, 32, 1 << 20);
+
+        List<String> chunks = chunker.chunk("  Leave is 24 days. Ask HR.\n\n\n \r\nSalary is paid monthly.\n\n");
+
+        assertEquals(List.of("Leave is 24 days. Ask HR.", "Salary is paid monthly."), chunks);
+        assertEquals(List.of(), chunker.chunk(" \n\n \n"));
+        // "Salary"(2) "is"(1) "paid"(1) "monthly"(2) "."(1)
+        assertEquals(7, TokenChunker.estimateTokens("Salary is paid monthly."));
+    }
+
+    @Test
+    void longParagraphsArePackedBySentenceWithOverlap() {
+        // Every sentence is 7 tokens: "Rule"(1) "number"(2) N(1) "applies"(2) "."(1)
+        StringBuilder paragraph = new StringBuilder();
+        for (int i = 1; i <= 6; i++) {
+            paragraph.append("Rule number ").append(i).append(" applies. ");
+        }
+
+        List<String> chunks = new TokenChunker(21, 7, 1 << 20).chunk(paragraph.toString());
+
+        assertEquals(List.of(
+                "Rule number 1 applies. Rule number 2 applies. Rule number 3 applies.",
+                "Rule number 3 applies. Rule number 4 applies. Rule number 5 applies.",
+                "Rule number 5 applies. Rule number 6 applies."), chunks);
+    }
+
+    @Test
+    void sentencesOverBudgetAreCutBetweenWords() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            words.add("word" + i);
+        }
+        String longToken = "x".repeat(60);
+
+        List<String> chunks = new TokenChunker(10, 0, 1 << 20).chunk(String.join(" ", words) + " " + longToken);
+
+        List<String> rejoined = new ArrayList<>();
+        for (String chunk : chunks) {
+            assertTrue(TokenChunker.estimateTokens(chunk) <= 10, chunk);
+            rejoined.addAll(List.of(chunk.split(" ")));
+        }
+        assertEquals(words, rejoined.subList(0, words.size()));
+        assertEquals(longToken, String.join("", rejoined.subList(words.size(), rejoined.size())));
+    }
+
+    @Test
+    void parallelChunkingMatchesSequentialChunking() {
+        Random random = new Random(7);
+        String[] breaks = {"\n\n", "\n \n", "\r\n\r\n", "\n\n\n"};
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200_000) {
+            int sentences = 1 + random.nextInt(12);
+            for (int s = 0; s < sentences; s++) {
+                int words = 3 + random.nextInt(20);
+                for (int w = 0; w < words; w++) {
+                    text.append("term").append(random.nextInt(1000)).append(w + 1 < words ? " " : "");
+                }
+                text.append(random.nextBoolean() ? ". " : "!\n");
+            }
+            text.append(breaks[random.nextInt(breaks.length)]);
+        }
+        String content = text.toString();
+
+        List<String> sequential = new TokenChunker(64, 8, Integer.MAX_VALUE).chunk(content);
+        List<String> parallel = new TokenChunker(64, 8, 4096).chunk(content);
+
+        assertTrue(sequential.size() > 1000);
+        assertEquals(sequential, parallel);
+    }
+}
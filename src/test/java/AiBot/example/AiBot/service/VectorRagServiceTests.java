@@ -0,0 +1,127 @@
+package AiBot.example.AiBot.service;
+
+import AiBot.example.AiBot.model.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorRagServiceTests {
+
+    @TempDir
+    Path directory;
+
+    private final List<String> embeddedTexts = new ArrayList<>();
+    private final VectorRagService service = new VectorRagService();
+    private HnswVectorStore vectorStore;
+
+    @BeforeEach
+    void setUp() {
+        vectorStore = new HnswVectorStore();
+        ReflectionTestUtils.setField(vectorStore, "path", directory.toString());
+        ReflectionTestUtils.setField(vectorStore, "m", 8);
+        ReflectionTestUtils.setField(vectorStore, "efConstruction", 32);
+        ReflectionTestUtils.setField(vectorStore, "efSearch", 16);
+        ReflectionTestUtils.setField(vectorStore, "segmentVectors", 64);
+        vectorStore.open();
+
+        // Each text gets a distinct unit vector; every text sent to "OpenAI" is recorded
+        EmbeddingClient embeddingClient = new EmbeddingClient() {
+            @Override
+            public List<Embedding> embedAll(List<String> texts) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (String text : texts) {
+                    embeddedTexts.add(text);
+                    float[] values = new float[8];
+                    values[Math.floorMod(text.hashCode(), 8)] = 1;
+                    embeddings.add(new Embedding(values));
+                }
+                return embeddings;
+            }
+        };
+
+        ReflectionTestUtils.setField(service, "vectorStore", vectorStore);
+        ReflectionTestUtils.setField(service, "embeddingClient", embeddingClient);
+        ReflectionTestUtils.setField(service, "embeddingCache", newEmbeddingCache());
+        ReflectionTestUtils.setField(service, "semanticAnswerCache", new SemanticAnswerCache());
+    }
+
+    @AfterEach
+    void tearDown() {
+        vectorStore.close();
+    }
+
+    @Test
+    void chunksStoredForAnotherDocumentAreNotEmbeddedAgain() {
+        List<String> handbook = List.of("Annual leave is 24 days.", "Salary is paid monthly.");
+        service.storeInVectorDatabase("1", handbook, EmbeddingCache.hashAll(handbook), service.embedChunks(handbook));
+        embeddedTexts.clear();
+
+        // Restart-like conditions: nothing in the in-memory embedding cache
+        ReflectionTestUtils.setField(service, "embeddingCache", newEmbeddingCache());
+        List<String> revised = List.of("Annual leave is 24 days.", "Remote work needs approval.", "Remote work needs approval.");
+        List<Embedding> embeddings = service.embedChunks(revised);
+
+        assertEquals(List.of("Remote work needs approval."), embeddedTexts);
+        assertEquals(3, embeddings.size());
+        assertEquals(embeddings.get(1), embeddings.get(2));
+        assertEquals(1.0f, embeddings.get(0).get(Math.floorMod(revised.get(0).hashCode(), 8)), 1e-6);
+    }
+
+    @Test
+    void revisionOnlyEmbedsAndStoresChangedChunks() {
+        List<String> v1 = List.of("Leave is 24 days.", "Salary is paid monthly.", "Offices close at 6pm.");
+        List<String> v1Hashes = EmbeddingCache.hashAll(v1);
+        assertEquals(new ChunkChanges(3, 0, 0),
+                service.storeInVectorDatabase("1", v1, v1Hashes, service.embedNewChunks("1", v1, v1Hashes)));
+        embeddedTexts.clear();
+        ReflectionTestUtils.setField(service, "embeddingCache", newEmbeddingCache());
+
+        // Paragraph edited, one removed, the rest moved
+        List<String> v2 = List.of("Salary is paid monthly.", "Leave is 25 days.", "Leave is 24 days.");
+        List<String> v2Hashes = EmbeddingCache.hashAll(v2);
+        List<Embedding> embeddings = service.embedNewChunks("1", v2, v2Hashes);
+
+        assertEquals(List.of("Leave is 25 days."), embeddedTexts);
+        assertNull(embeddings.get(0));
+        assertEquals(new ChunkChanges(1, 1, 2), service.storeInVectorDatabase("1", v2, v2Hashes, embeddings));
+
+        List<String> stored = vectorStore.search(embeddings.get(1), "", List.of("1"), new RetrievalOptions(RetrievalOptions.VECTOR, 5, 1, 0))
+                .stream().sorted(Comparator.comparingInt(RetrievedChunk::chunkIndex)).map(RetrievedChunk::text).toList();
+        assertEquals(v2, stored);
+    }
+
+    @Test
+    void eachDistinctChunkIsLookedUpInTheCacheOnce() {
+        EmbeddingCache cache = newEmbeddingCache();
+        ReflectionTestUtils.setField(service, "embeddingCache", cache);
+        List<String> chunks = List.of("Leave is 24 days.", "Salary is paid monthly.", "Leave is 24 days.");
+
+        service.embedChunks(chunks);
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+        assertEquals(List.of("Leave is 24 days.", "Salary is paid monthly."), embeddedTexts);
+
+        service.embedChunks(chunks);
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, embeddedTexts.size());
+    }
+
+    private static EmbeddingCache newEmbeddingCache() {
+        EmbeddingCache cache = new EmbeddingCache();
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.registerMetrics();
+        return cache;
+    }
+}